@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pivot.wtk.ButtonPressListener;
+import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.Container;
+import org.apache.pivot.wtk.Menu;
+import org.apache.pivot.wtk.MenuButton;
+import org.scijava.MenuPath;
+import org.scijava.command.CommandInfo;
+import org.scijava.module.DefaultMutableModule;
+import org.scijava.module.DefaultMutableModuleItem;
+import org.scijava.module.ModuleInfo;
+import org.scijava.module.MutableModuleInfo;
+import org.scijava.util.ColorRGB;
+import org.scijava.widget.NumberWidget;
+
+/**
+ * Synthetic menu trees and modules shared by the benchmarks.
+ * 
+ * @author Curtis Rueden
+ */
+public final class BenchmarkFixtures {
+
+	private BenchmarkFixtures() {
+		// NB: Prevent instantiation of utility class.
+	}
+
+	/**
+	 * Creates module infos for the given number of commands, spread over 20
+	 * top-level menus with 50 submenus each.
+	 */
+	static List<ModuleInfo> commands(final int count) {
+		final List<ModuleInfo> infos = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			infos.add(command("Menu " + i % 20 + ">Group " + i / 20 % 50 +
+				">Command " + i));
+		}
+		return infos;
+	}
+
+	/** Creates a module info for a command with the given menu path. */
+	static CommandInfo command(final String menuPath) {
+		final CommandInfo info = new CommandInfo("benchmark.Command");
+		info.setMenuPath(new MenuPath(menuPath));
+		return info;
+	}
+
+	/**
+	 * Creates a module with the given number of inputs, cycling through the
+	 * types and styles supported by the Pivot widgets.
+	 */
+	public static DefaultMutableModule module(final int inputs) {
+		final DefaultMutableModule module = new DefaultMutableModule();
+		final MutableModuleInfo info = module.getInfo();
+		for (int i = 0; i < inputs; i++) {
+			final String name = "input" + i;
+			switch (i % 8) {
+				case 0:
+					addInput(module, name, String.class, "text", null);
+					break;
+				case 1:
+					addInput(module, name, Integer.class, 5, NumberWidget.SPINNER_STYLE);
+					break;
+				case 2:
+					addInput(module, name, Integer.class, 5, NumberWidget.SLIDER_STYLE);
+					break;
+				case 3:
+					addInput(module, name, Double.class, 0.5,
+						NumberWidget.SCROLL_BAR_STYLE);
+					break;
+				case 4:
+					addInput(module, name, Boolean.class, true, null);
+					break;
+				case 5:
+					addInput(module, name, File.class, new File("data.txt"), null);
+					break;
+				case 6:
+					addInput(module, name, ColorRGB.class, new ColorRGB(255, 0, 0),
+						null);
+					break;
+				default:
+					final DefaultMutableModuleItem<String> item = addInput(module, name,
+						String.class, "b", null);
+					item.setChoices(Arrays.asList("a", "b", "c"));
+			}
+		}
+		info.setModuleClass(DefaultMutableModule.class);
+		return module;
+	}
+
+	/** Adds an input with the given type, value and widget style. */
+	static <T> DefaultMutableModuleItem<T> addInput(
+		final DefaultMutableModule module, final String name, final Class<T> type,
+		final T value, final String style)
+	{
+		final DefaultMutableModuleItem<T> item = new DefaultMutableModuleItem<>(
+			module.getInfo(), name, type);
+		if (Number.class.isAssignableFrom(type)) {
+			item.setMinimumValue(type.cast(convert(0, type)));
+			item.setMaximumValue(type.cast(convert(100, type)));
+			item.setStepSize(1);
+		}
+		item.setWidgetStyle(style);
+		module.getInfo().addInput(item);
+		module.setInput(name, value);
+		return item;
+	}
+
+	/**
+	 * Gets a value of the same type as the given one, as set by the
+	 * {@link #module} fixture, but different from it.
+	 */
+	static Object alternate(final Object value) {
+		if (value instanceof Integer) return (Integer) value + 1;
+		if (value instanceof Double) return (Double) value / 2;
+		if (value instanceof Boolean) return !(Boolean) value;
+		if (value instanceof File) return new File("other.txt");
+		if (value instanceof ColorRGB) return new ColorRGB(0, 0, 255);
+		if ("b".equals(value)) return "c"; // one of the choices
+		return value + "!";
+	}
+
+	/**
+	 * Populates every submenu beneath the given top-level components, as if
+	 * the user had opened each of them.
+	 */
+	static void openAll(final Container topLevel) {
+		for (final Component component : topLevel) {
+			if (!(component instanceof MenuButton)) continue;
+			final MenuButton button = (MenuButton) component;
+			for (final ButtonPressListener listener : button
+				.getButtonPressListeners())
+			{
+				listener.buttonPressed(button);
+			}
+			openAll(button.getMenu());
+		}
+	}
+
+	private static void openAll(final Menu menu) {
+		for (final Menu.Section section : menu.getSections()) {
+			for (final Menu.Item item : section) {
+				if (item.getMenu() == null) continue;
+				item.setActive(true);
+				item.setActive(false);
+				openAll(item.getMenu());
+			}
+		}
+	}
+
+	private static Object convert(final int value, final Class<?> type) {
+		if (type == Double.class) return (double) value;
+		return value;
+	}
+
+}
@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.wtk.BoxPane;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+import org.scijava.module.Module;
+import org.scijava.module.ModuleException;
+import org.scijava.module.ModuleItem;
+import org.scijava.ui.pivot.widget.PivotInputHarvester;
+import org.scijava.ui.pivot.widget.PivotInputPanel;
+import org.scijava.widget.InputWidget;
+import org.scijava.widget.WidgetModel;
+import org.scijava.widget.WidgetService;
+
+/**
+ * Benchmarks building and refreshing a {@link PivotInputPanel} for modules
+ * with various numbers of parameters.
+ * 
+ * @author Curtis Rueden
+ * @see org.scijava.ui.pivot.widget.InputPanelCacheBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class InputPanelBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int inputs;
+
+	private Context context;
+	private WidgetService widgetService;
+	private PivotInputHarvester harvester;
+	private Module module;
+
+	@Setup
+	public void setUp() {
+		context = new Context();
+		widgetService = context.service(WidgetService.class);
+		harvester = new PivotInputHarvester();
+		context.inject(harvester);
+		module = BenchmarkFixtures.module(inputs);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Adds prebuilt widgets to an empty panel, as for a small module. */
+	@Benchmark
+	public PivotInputPanel addWidget(final Widgets state) {
+		for (final InputWidget<?, BoxPane> widget : state.widgets) {
+			state.panel.addWidget(widget);
+		}
+		return state.panel;
+	}
+
+	/**
+	 * Adds lazily built rows to an empty panel, as for a module with very many
+	 * inputs. Only the widgets of the first screen of rows are built.
+	 */
+	@Benchmark
+	public PivotInputPanel addRow(final Rows state) {
+		for (final WidgetModel model : state.models) {
+			state.panel.addRow(model);
+		}
+		return state.panel;
+	}
+
+	/** Builds a panel from scratch, adding all widgets up front. */
+	@Benchmark
+	public PivotInputPanel buildPanel() throws ModuleException {
+		final PivotInputPanel p = harvester.createInputPanel();
+		harvester.buildPanel(p, module);
+		return p;
+	}
+
+	/**
+	 * Changes some inputs, as a callback would, and refreshes the panel,
+	 * counting the widgets which were refreshed and those which were skipped as
+	 * unchanged.
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public PivotInputPanel refresh(final Refresh state, final Touches touches) {
+		state.panel.runCallback(state.module, state::change);
+		state.panel.refresh();
+		final int touched = state.panel.getLastTouchedCount();
+		touches.touched += touched;
+		touches.skipped += state.panel.getWidgetCount() - touched;
+		return state.panel;
+	}
+
+	// -- Helper classes --
+
+	/** Empty panel and prebuilt widgets for each {@link #addWidget} call. */
+	@State(Scope.Thread)
+	public static class Widgets {
+
+		private PivotInputPanel panel;
+		private List<InputWidget<?, BoxPane>> widgets;
+
+		@Setup(Level.Invocation)
+		@SuppressWarnings("unchecked")
+		public void createWidgets(final InputPanelBenchmark benchmark) {
+			panel = benchmark.harvester.createInputPanel();
+			widgets = new ArrayList<>(benchmark.inputs);
+			for (final WidgetModel model : models(benchmark, panel)) {
+				widgets.add((InputWidget<?, BoxPane>) benchmark.widgetService.create(
+					model));
+			}
+		}
+	}
+
+	/** Empty panel and models for each {@link #addRow} call. */
+	@State(Scope.Thread)
+	public static class Rows {
+
+		private PivotInputPanel panel;
+		private List<WidgetModel> models;
+
+		@Setup(Level.Invocation)
+		@SuppressWarnings("unchecked")
+		public void createModels(final InputPanelBenchmark benchmark) {
+			panel = benchmark.harvester.createInputPanel();
+			final WidgetService widgetService = benchmark.widgetService;
+			panel.setWidgetFactory(model -> (InputWidget<?, BoxPane>) widgetService
+				.create(model));
+			models = models(benchmark, panel);
+		}
+	}
+
+	/**
+	 * Built panel whose module has some of its inputs changed before each
+	 * {@link #refresh} call, alternating between two sets of values.
+	 */
+	@State(Scope.Thread)
+	public static class Refresh {
+
+		@Param({ "0", "1", "10" })
+		public int changed;
+
+		private Module module;
+		private PivotInputPanel panel;
+		private final List<String> names = new ArrayList<>();
+		private final List<Object> values = new ArrayList<>();
+		private final List<Object> alternates = new ArrayList<>();
+		private boolean alternate;
+
+		@Setup
+		public void buildPanel(final InputPanelBenchmark benchmark)
+			throws ModuleException
+		{
+			module = BenchmarkFixtures.module(benchmark.inputs);
+			panel = benchmark.harvester.createInputPanel();
+			benchmark.harvester.buildPanel(panel, module);
+			for (final ModuleItem<?> item : module.getInfo().inputs()) {
+				if (names.size() == changed) break;
+				final Object value = module.getInput(item.getName());
+				names.add(item.getName());
+				values.add(value);
+				alternates.add(BenchmarkFixtures.alternate(value));
+			}
+		}
+
+		private void change() {
+			alternate = !alternate;
+			final List<Object> v = alternate ? alternates : values;
+			for (int i = 0; i < names.size(); i++) {
+				module.setInput(names.get(i), v.get(i));
+			}
+		}
+	}
+
+	/** Numbers of widgets refreshed and skipped by {@link #refresh}. */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Touches {
+
+		public long touched;
+		public long skipped;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			touched = 0;
+			skipped = 0;
+		}
+	}
+
+	// -- Helper methods --
+
+	private static List<WidgetModel> models(
+		final InputPanelBenchmark benchmark, final PivotInputPanel panel)
+	{
+		final List<WidgetModel> models = new ArrayList<>(benchmark.inputs);
+		for (final ModuleItem<?> item : benchmark.module.getInfo().inputs()) {
+			models.add(benchmark.widgetService.createModel(panel, benchmark.module,
+				item, Collections.emptyList()));
+		}
+		return models;
+	}
+
+}
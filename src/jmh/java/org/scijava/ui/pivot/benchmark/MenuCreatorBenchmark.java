@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.benchmark;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.wtk.BoxPane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+import org.scijava.command.CommandInfo;
+import org.scijava.menu.MenuService;
+import org.scijava.menu.ShadowMenu;
+import org.scijava.module.ModuleService;
+import org.scijava.ui.pivot.menu.PivotMenuCreator;
+
+/**
+ * Benchmarks building and updating the Pivot menu bar for synthetic menu
+ * trees of various sizes.
+ * 
+ * @author Curtis Rueden
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class MenuCreatorBenchmark {
+
+	@Param({ "1000", "10000", "50000" })
+	public int commands;
+
+	private Context context;
+	private ShadowMenu root;
+
+	/** Menu creator holding a fully built menu bar. */
+	private PivotMenuCreator creator;
+
+	@Setup
+	public void setUp() {
+		context = new Context(MenuService.class, ModuleService.class);
+		root = new ShadowMenu(context, BenchmarkFixtures.commands(commands));
+		creator = new PivotMenuCreator();
+		final BoxPane topLevel = new BoxPane();
+		creator.createMenus(root, topLevel);
+		BenchmarkFixtures.openAll(topLevel);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Builds the top level of the menu bar, as done at startup. */
+	@Benchmark
+	public BoxPane createMenus() {
+		final BoxPane topLevel = new BoxPane();
+		new PivotMenuCreator().createMenus(root, topLevel);
+		return topLevel;
+	}
+
+	/** Builds the menu bar and populates every submenu. */
+	@Benchmark
+	public BoxPane createAndOpenAllMenus() {
+		final BoxPane topLevel = new BoxPane();
+		new PivotMenuCreator().createMenus(root, topLevel);
+		BenchmarkFixtures.openAll(topLevel);
+		return topLevel;
+	}
+
+	/** Adds a command to, then removes it from, a fully built menu bar. */
+	@Benchmark
+	public void addAndRemoveCommand() {
+		final CommandInfo info = BenchmarkFixtures.command(
+			"Menu 0>Group 0>Added Command");
+		root.add(info);
+		final ShadowMenu added = root.getMenu("Menu 0").getMenu("Group 0")
+			.getMenu("Added Command");
+		creator.addNodes(Collections.singleton(added));
+		root.remove(info);
+		creator.removeNodes(Collections.singleton(added));
+	}
+
+}
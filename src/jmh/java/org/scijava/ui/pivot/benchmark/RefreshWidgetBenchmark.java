@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.benchmark;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.wtk.BoxPane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+import org.scijava.ItemVisibility;
+import org.scijava.module.DefaultMutableModule;
+import org.scijava.module.DefaultMutableModuleItem;
+import org.scijava.ui.pivot.widget.PivotButtonWidget;
+import org.scijava.ui.pivot.widget.PivotChoiceWidget;
+import org.scijava.ui.pivot.widget.PivotColorWidget;
+import org.scijava.ui.pivot.widget.PivotFileWidget;
+import org.scijava.ui.pivot.widget.PivotInputPanel;
+import org.scijava.ui.pivot.widget.PivotInputWidget;
+import org.scijava.ui.pivot.widget.PivotMessageWidget;
+import org.scijava.ui.pivot.widget.PivotNumberScrollBarWidget;
+import org.scijava.ui.pivot.widget.PivotNumberSliderWidget;
+import org.scijava.ui.pivot.widget.PivotNumberSpinnerWidget;
+import org.scijava.ui.pivot.widget.PivotObjectWidget;
+import org.scijava.ui.pivot.widget.PivotTextWidget;
+import org.scijava.ui.pivot.widget.PivotToggleWidget;
+import org.scijava.util.ColorRGB;
+import org.scijava.widget.Button;
+import org.scijava.widget.NumberWidget;
+import org.scijava.widget.WidgetModel;
+import org.scijava.widget.WidgetService;
+
+/**
+ * Benchmarks {@code refreshWidget} for each Pivot input widget. Since the
+ * Pivot UI requires the event dispatch thread, this includes the round trip
+ * to that thread.
+ * 
+ * @author Curtis Rueden
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class RefreshWidgetBenchmark {
+
+	@Param({ "button", "choice", "color", "file", "message", "scrollBar",
+		"slider", "spinner", "object", "text", "toggle" })
+	public String widget;
+
+	private Context context;
+	private PivotInputWidget<?> inputWidget;
+
+	@Setup
+	public void setUp() {
+		context = new Context();
+		final DefaultMutableModule module = new DefaultMutableModule();
+		List<?> objectPool = Collections.emptyList();
+		switch (widget) {
+			case "button":
+				inputWidget = new PivotButtonWidget();
+				BenchmarkFixtures.addInput(module, widget, Button.class, null, null);
+				break;
+			case "choice":
+				inputWidget = new PivotChoiceWidget();
+				final DefaultMutableModuleItem<String> item = BenchmarkFixtures
+					.addInput(module, widget, String.class, "b", null);
+				item.setChoices(Arrays.asList("a", "b", "c"));
+				break;
+			case "color":
+				inputWidget = new PivotColorWidget();
+				BenchmarkFixtures.addInput(module, widget, ColorRGB.class,
+					new ColorRGB(255, 0, 0), null);
+				break;
+			case "file":
+				inputWidget = new PivotFileWidget();
+				BenchmarkFixtures.addInput(module, widget, File.class, new File(
+					"data.txt"), null);
+				break;
+			case "message":
+				inputWidget = new PivotMessageWidget();
+				BenchmarkFixtures.addInput(module, widget, String.class, "message",
+					null).setVisibility(ItemVisibility.MESSAGE);
+				break;
+			case "scrollBar":
+				inputWidget = new PivotNumberScrollBarWidget();
+				BenchmarkFixtures.addInput(module, widget, Integer.class, 5,
+					NumberWidget.SCROLL_BAR_STYLE);
+				break;
+			case "slider":
+				inputWidget = new PivotNumberSliderWidget();
+				BenchmarkFixtures.addInput(module, widget, Integer.class, 5,
+					NumberWidget.SLIDER_STYLE);
+				break;
+			case "spinner":
+				inputWidget = new PivotNumberSpinnerWidget();
+				BenchmarkFixtures.addInput(module, widget, Integer.class, 5,
+					NumberWidget.SPINNER_STYLE);
+				break;
+			case "object":
+				inputWidget = new PivotObjectWidget();
+				BenchmarkFixtures.addInput(module, widget, Object.class, "b", null);
+				objectPool = Arrays.asList("a", "b", "c");
+				break;
+			case "text":
+				inputWidget = new PivotTextWidget();
+				BenchmarkFixtures.addInput(module, widget, String.class, "text",
+					null);
+				break;
+			case "toggle":
+				inputWidget = new PivotToggleWidget();
+				BenchmarkFixtures.addInput(module, widget, Boolean.class, true, null);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown widget: " + widget);
+		}
+
+		final WidgetModel model = context.service(WidgetService.class)
+			.createModel(new PivotInputPanel(), module, module.getInfo().getInput(
+				widget), objectPool);
+		context.inject(inputWidget);
+		try {
+			inputWidget.set(model);
+		}
+		catch (final UnsupportedOperationException exc) {
+			// NB: The button widget is not yet implemented, but the model has
+			// been assigned, which is all refreshWidget needs.
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Benchmark
+	public BoxPane refreshWidget() {
+		inputWidget.refreshWidget();
+		return inputWidget.getComponent();
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.widget;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+import org.scijava.module.DefaultMutableModule;
+import org.scijava.module.Module;
+import org.scijava.module.ModuleException;
+import org.scijava.module.ModuleInfo;
+import org.scijava.module.ModuleItem;
+import org.scijava.ui.pivot.benchmark.BenchmarkFixtures;
+
+/**
+ * Benchmarks getting a {@link PivotInputPanel} for a module run, by rebinding
+ * the panel cached by {@link InputPanelCache} versus building a new one.
+ * <p>
+ * This benchmark lives in the widget package, since panels are only taken
+ * out of and put back into the cache by the {@link PivotInputHarvester}.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class InputPanelCacheBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int inputs;
+
+	private Context context;
+	private PivotInputHarvester harvester;
+	private InputPanelCache cache;
+	private ModuleInfo info;
+
+	/** Two instances of the same module, run alternately. */
+	private final Module[] modules = new Module[2];
+	private int next;
+
+	@Setup
+	public void setUp() throws ModuleException {
+		context = new Context();
+		harvester = new PivotInputHarvester();
+		context.inject(harvester);
+		cache = new InputPanelCache();
+		final DefaultMutableModule module = BenchmarkFixtures.module(inputs);
+		final DefaultMutableModule other = new DefaultMutableModule(module
+			.getInfo());
+		for (final ModuleItem<?> item : module.getInfo().inputs()) {
+			other.setInput(item.getName(), module.getInput(item.getName()));
+		}
+		modules[0] = module;
+		modules[1] = other;
+		info = module.getInfo();
+		run();
+		run();
+		if (cache.getHitCount() == 0) {
+			throw new IllegalStateException("The cached panel was not reused");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Rebinds the cached panel to the other instance of the module. */
+	@Benchmark
+	public PivotInputPanel rebind() throws ModuleException {
+		return run();
+	}
+
+	/** Builds a panel from scratch, as for each run without the cache. */
+	@Benchmark
+	public PivotInputPanel build() throws ModuleException {
+		cache.clear();
+		return run();
+	}
+
+	// -- Helper methods --
+
+	private PivotInputPanel run() throws ModuleException {
+		next = 1 - next;
+		final InputPanelCache.CachedPanel entry = harvester.acquire(cache,
+			modules[next]);
+		cache.release(info, entry);
+		return entry.panel;
+	}
+
+}
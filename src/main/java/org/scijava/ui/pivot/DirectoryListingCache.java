@@ -0,0 +1,349 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.Disposable;
+import org.scijava.log.LogService;
+
+/**
+ * Bounded, least-recently-used cache of directory listings.
+ * <p>
+ * Listings are read and sorted on a background executor, and kept fresh by a
+ * {@link WatchService}: when a cached directory changes, its listing is
+ * reloaded in the background. Bursts of changes are coalesced into a single
+ * reload, and a reload which completes after a newer one is discarded. This
+ * lets file choosers resolve and display large (e.g., network-mounted)
+ * directories without touching the file system on the event dispatch thread.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class DirectoryListingCache implements Disposable {
+
+	/** Default maximum number of cached directories. */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/** Time to wait for further changes before reloading, in milliseconds. */
+	private static final long COALESCE_DELAY = 250;
+
+	private final int capacity;
+	private final Executor executor;
+	private final ThreadFactory threadFactory;
+	private final LogService log;
+
+	/** Cached listings, in access order. */
+	private final LinkedHashMap<Path, CachedDirectory> entries;
+
+	private WatchService watcher;
+
+	public DirectoryListingCache(final Executor executor,
+		final ThreadFactory threadFactory, final LogService log)
+	{
+		this(DEFAULT_CAPACITY, executor, threadFactory, log);
+	}
+
+	public DirectoryListingCache(final int capacity, final Executor executor,
+		final ThreadFactory threadFactory, final LogService log)
+	{
+		this.capacity = capacity;
+		this.executor = executor;
+		this.threadFactory = threadFactory;
+		this.log = log;
+		entries = new LinkedHashMap<Path, CachedDirectory>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<Path, CachedDirectory> e)
+			{
+				if (size() <= DirectoryListingCache.this.capacity) return false;
+				e.getValue().unwatch();
+				return true;
+			}
+		};
+	}
+
+	// -- DirectoryListingCache methods --
+
+	/**
+	 * Gets the listing of the given directory, loading it in the background if
+	 * it is not already cached.
+	 */
+	public CompletableFuture<Listing> list(final File dir) {
+		final Path path = dir.getAbsoluteFile().toPath();
+		synchronized (entries) {
+			CachedDirectory entry = entries.get(path);
+			if (entry == null) {
+				entry = new CachedDirectory(path);
+				entries.put(path, entry);
+				entry.load();
+				entry.watch();
+			}
+			return entry.listing;
+		}
+	}
+
+	/**
+	 * Gets the listing of the given directory if it is cached and loaded, or
+	 * null otherwise. Never blocks or touches the file system.
+	 */
+	public Listing getIfPresent(final File dir) {
+		final Path path = dir.getAbsoluteFile().toPath();
+		final CompletableFuture<Listing> listing;
+		synchronized (entries) {
+			final CachedDirectory entry = entries.get(path);
+			if (entry == null) return null;
+			listing = entry.listing;
+		}
+		return listing.isDone() && !listing.isCompletedExceptionally() ? //
+			listing.join() : null;
+	}
+
+	/**
+	 * Loads, in the background, the listing of the directory containing the
+	 * given file (or of the file itself, if it is a directory).
+	 * 
+	 * @return A future for the directory whose listing is now cached, which
+	 *         completes with null if there is no such directory.
+	 */
+	public CompletableFuture<File> prefetch(final File file) {
+		return CompletableFuture.supplyAsync(() -> {
+			File dir = file.getAbsoluteFile();
+			if (!dir.isDirectory()) dir = dir.getParentFile();
+			if (dir == null || !dir.isDirectory()) return null;
+			list(dir).join();
+			return dir;
+		}, executor);
+	}
+
+	/** Discards the cached listing of the given directory. */
+	public void invalidate(final File dir) {
+		final Path path = dir.getAbsoluteFile().toPath();
+		synchronized (entries) {
+			final CachedDirectory entry = entries.remove(path);
+			if (entry != null) entry.unwatch();
+		}
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		synchronized (entries) {
+			for (final CachedDirectory entry : entries.values()) {
+				entry.unwatch();
+			}
+			entries.clear();
+			if (watcher != null) {
+				try {
+					watcher.close();
+				}
+				catch (final IOException exc) {
+					if (log != null) log.debug(exc);
+				}
+				watcher = null;
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the watch service, starting it if needed. Call while locked. */
+	private WatchService watcher() throws IOException {
+		if (watcher == null) {
+			final WatchService service = FileSystems.getDefault().newWatchService();
+			watcher = service;
+			// NB: Hand over the service, since the cache may be disposed first.
+			final Thread thread = threadFactory.newThread(() -> watch(service));
+			thread.setName("Pivot-DirectoryWatcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return watcher;
+	}
+
+	/** Reloads listings of watched directories as they change. */
+	private void watch(final WatchService service) {
+		try {
+			while (true) {
+				// collect the keys signaled during a short window
+				final Set<WatchKey> keys = new LinkedHashSet<>();
+				keys.add(service.take());
+				final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS
+					.toNanos(COALESCE_DELAY);
+				for (long wait; (wait = deadline - System.nanoTime()) > 0;) {
+					final WatchKey key = service.poll(wait, TimeUnit.NANOSECONDS);
+					if (key != null) keys.add(key);
+				}
+				for (final WatchKey key : keys) {
+					key.pollEvents();
+					final Path path = (Path) key.watchable();
+					synchronized (entries) {
+						final CachedDirectory entry = entries.get(path);
+						if (entry != null && entry.key == key) entry.load();
+					}
+					if (!key.reset()) invalidate(path.toFile());
+				}
+			}
+		}
+		catch (final InterruptedException | ClosedWatchServiceException exc) {
+			// NB: Cache was disposed; stop watching.
+		}
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * A snapshot of a directory's contents, with subdirectories first and each
+	 * group sorted by name.
+	 */
+	public static class Listing {
+
+		private final List<File> files;
+		private final Set<File> directories;
+
+		private Listing(final List<File> files, final Set<File> directories) {
+			this.files = Collections.unmodifiableList(files);
+			this.directories = directories;
+		}
+
+		/** Gets the files and subdirectories of the directory. */
+		public List<File> getFiles() {
+			return files;
+		}
+
+		/** Gets whether the given entry of this listing is a directory. */
+		public boolean isDirectory(final File file) {
+			return directories.contains(file.getAbsoluteFile());
+		}
+
+		/** Gets whether the given file is an entry of this listing. */
+		public boolean contains(final File file) {
+			return files.contains(file.getAbsoluteFile());
+		}
+	}
+
+	private class CachedDirectory {
+
+		private final Path path;
+		private volatile CompletableFuture<Listing> listing;
+		private WatchKey key;
+
+		/** Number of the latest load, guarded by the cache's lock. */
+		private long generation;
+
+		private CachedDirectory(final Path path) {
+			this.path = path;
+		}
+
+		/** (Re)loads the listing in the background. Call while locked. */
+		private void load() {
+			final long loadGeneration = ++generation;
+			final CompletableFuture<Listing> loading = CompletableFuture
+				.supplyAsync(this::read, executor);
+			if (listing == null || !listing.isDone()) listing = loading;
+			else {
+				// NB: Keep serving the previous listing until the new one is ready.
+				loading.thenAccept(l -> {
+					synchronized (entries) {
+						// NB: Discard the listing if a newer load has since started.
+						if (generation != loadGeneration) return;
+						listing = CompletableFuture.completedFuture(l);
+					}
+				});
+			}
+		}
+
+		private Listing read() {
+			final List<File> files = new ArrayList<>();
+			final Set<File> directories = new HashSet<>();
+			try (final DirectoryStream<Path> stream = //
+				Files.newDirectoryStream(path))
+			{
+				for (final Path child : stream) {
+					final File file = child.toFile();
+					files.add(file);
+					if (Files.isDirectory(child)) directories.add(file);
+				}
+			}
+			catch (final IOException exc) {
+				invalidate(path.toFile());
+				throw new IllegalStateException(exc);
+			}
+			files.sort((f1, f2) -> {
+				final boolean d1 = directories.contains(f1);
+				if (d1 != directories.contains(f2)) return d1 ? -1 : 1;
+				return f1.getName().compareToIgnoreCase(f2.getName());
+			});
+			return new Listing(files, directories);
+		}
+
+		/** Registers this directory with the watch service. Call while locked. */
+		private void watch() {
+			try {
+				// NB: Modifications to file contents do not change the listing.
+				key = path.register(watcher(), StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE);
+			}
+			catch (final IOException | UnsupportedOperationException exc) {
+				// NB: Listing will not be refreshed until evicted or invalidated.
+				if (log != null) log.debug("Cannot watch " + path, exc);
+			}
+		}
+
+		private void unwatch() {
+			if (key != null) key.cancel();
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.awt.EventQueue;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import org.scijava.Disposable;
+import org.scijava.log.LogService;
+
+/**
+ * Watches for stalls of the event dispatch thread.
+ * <p>
+ * The latency of each probe of a {@link RuntimeMonitor} is recorded in a
+ * histogram. When a probe is blocked for longer than the
+ * {@link #getThreshold() threshold}, the stack of the event dispatch thread is
+ * logged as a warning, showing what is blocking it. The watchdog shares the
+ * monitor's probe rather than sending its own.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class EventThreadWatchdog implements Disposable {
+
+	/** Default latency above which the thread is considered stalled, in ms. */
+	public static final int DEFAULT_THRESHOLD = 500;
+
+	/** Number of histogram buckets. */
+	private static final int BUCKETS = 16;
+
+	private final RuntimeMonitor monitor;
+	private final LogService log;
+
+	/** The event dispatch thread, recorded when the watchdog is created. */
+	private final Thread eventThread;
+
+	private final Consumer<RuntimeMonitor.Sample> sampleListener =
+		this::sampled;
+	private final LongConsumer stallListener = this::stalled;
+
+	private volatile int threshold = DEFAULT_THRESHOLD;
+
+	/** Number of probes in each latency bucket. */
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+	/** Whether the outstanding probe has been reported as stalled. */
+	private volatile boolean stalled;
+
+	/**
+	 * Creates a watchdog over the given monitor's probes. If not called on the
+	 * event dispatch thread, waits for that thread to become available.
+	 */
+	public EventThreadWatchdog(final RuntimeMonitor monitor,
+		final LogService log)
+	{
+		this.monitor = monitor;
+		this.log = log;
+		eventThread = eventThread();
+		monitor.addListener(sampleListener);
+		monitor.addStallListener(stallListener);
+	}
+
+	// -- EventThreadWatchdog methods --
+
+	/** Gets the latency above which a stall is logged, in milliseconds. */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/** Sets the latency above which a stall is logged, in milliseconds. */
+	public void setThreshold(final int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Gets the number of probes in each latency bucket. Bucket 0 counts probes
+	 * of less than 1 ms, and each bucket {@code i > 0} those of at least
+	 * 2<sup>i-1</sup> and less than 2<sup>i</sup> ms, except the last, which
+	 * counts all longer ones too.
+	 */
+	public long[] getHistogram() {
+		final long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = histogram.get(i);
+		}
+		return counts;
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		monitor.removeListener(sampleListener);
+		monitor.removeStallListener(stallListener);
+	}
+
+	// -- Helper methods --
+
+	/** Records the latency of a probe which has run. */
+	private void sampled(final RuntimeMonitor.Sample sample) {
+		final long millis = sample.getLatency() / 1000000;
+		histogram.incrementAndGet(bucket(millis));
+		if (stalled) {
+			stalled = false;
+			if (log != null) {
+				log.warn("Event dispatch thread was blocked for " + millis + " ms");
+			}
+		}
+	}
+
+	/** Logs the stack of the event dispatch thread, once per stall. */
+	private void stalled(final long waiting) {
+		if (stalled || waiting / 1000000 < threshold) return;
+		stalled = true;
+		if (log == null || eventThread == null) return;
+		final Exception stack = new Exception("Event dispatch thread stack");
+		stack.setStackTrace(eventThread.getStackTrace());
+		log.warn("Event dispatch thread blocked for more than " + threshold +
+			" ms", stack);
+	}
+
+	/** Gets the event dispatch thread, or null if interrupted. */
+	private Thread eventThread() {
+		if (EventQueue.isDispatchThread()) return Thread.currentThread();
+		final Thread[] thread = new Thread[1];
+		try {
+			EventQueue.invokeAndWait(() -> thread[0] = Thread.currentThread());
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+		catch (final InvocationTargetException exc) {
+			if (log != null) log.debug(exc);
+		}
+		return thread[0];
+	}
+
+	/** Gets the histogram bucket of the given latency. */
+	private static int bucket(final long millis) {
+		final int bucket = 64 - Long.numberOfLeadingZeros(millis);
+		return Math.min(bucket, BUCKETS - 1);
+	}
+
+}
@@ -0,0 +1,268 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pivot.wtk.media.Image;
+import org.apache.pivot.wtk.media.Picture;
+import org.scijava.Disposable;
+
+/**
+ * Shared cache of icons, loaded and scaled on a background pool.
+ * <p>
+ * Icons are keyed on URL and target size, and kept in a least-recently-used
+ * cache bounded by total pixel count. Concurrent requests for the same icon
+ * share a single load. Until an icon is ready, callers can show a
+ * {@link #getPlaceholder placeholder} of the same size.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class IconCache implements Disposable {
+
+	/** Default maximum number of cached pixels (4 MB of ARGB pixels). */
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	/** Number of threads loading icons. */
+	private static final int THREADS = 2;
+
+	private final ExecutorService executor;
+	private final long capacity;
+
+	/** Loaded icons, in access order. */
+	private final LinkedHashMap<Key, Picture> cache = new LinkedHashMap<>(16,
+		0.75f, true);
+
+	/** Number of pixels of the loaded icons. */
+	private long pixels;
+
+	/** Icons currently being loaded. */
+	private final Map<Key, CompletableFuture<Image>> pending =
+		new ConcurrentHashMap<>();
+
+	/** Placeholders, keyed on size. */
+	private final Map<Integer, Picture> placeholders = new ConcurrentHashMap<>();
+
+	public IconCache(final ThreadFactory threadFactory) {
+		this(threadFactory, DEFAULT_CAPACITY);
+	}
+
+	public IconCache(final ThreadFactory threadFactory, final long capacity) {
+		executor = Executors.newFixedThreadPool(THREADS, threadFactory);
+		this.capacity = capacity;
+	}
+
+	// -- IconCache methods --
+
+	/**
+	 * Loads the icon at the given URL, scaled to fit a square of the given
+	 * size.
+	 * 
+	 * @return A future which completes with the icon, or with null if it could
+	 *         not be read.
+	 */
+	public CompletableFuture<Image> load(final URL url, final int size) {
+		final Key key = new Key(url.toExternalForm(), size);
+		final Image cached = get(key);
+		if (cached != null) return CompletableFuture.completedFuture(cached);
+
+		final CompletableFuture<Image> future = new CompletableFuture<>();
+		final CompletableFuture<Image> existing = pending.putIfAbsent(key, future);
+		if (existing != null) return existing;
+		executor.execute(() -> {
+			try {
+				future.complete(read(key, url));
+			}
+			catch (final RuntimeException exc) {
+				future.completeExceptionally(exc);
+			}
+			finally {
+				pending.remove(key);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Loads the icon at the URL given by a locator, which is also called on
+	 * the background pool, since resolving an icon's URL may load classes.
+	 * 
+	 * @return A future which completes with the icon, or with null if there is
+	 *         no icon or it could not be read.
+	 */
+	public CompletableFuture<Image> load(final Supplier<URL> locator,
+		final int size)
+	{
+		return CompletableFuture.supplyAsync(locator, executor).thenCompose(
+			url -> url == null ? CompletableFuture.completedFuture(null) : load(url,
+				size));
+	}
+
+	/** Gets the icon at the given URL and size, or null if not yet loaded. */
+	public Image getIfPresent(final URL url, final int size) {
+		return get(new Key(url.toExternalForm(), size));
+	}
+
+	/** Gets a placeholder to show until an icon of the given size is loaded. */
+	public Image getPlaceholder(final int size) {
+		Picture placeholder = placeholders.get(size);
+		if (placeholder == null) {
+			final BufferedImage image = new BufferedImage(size, size,
+				BufferedImage.TYPE_INT_ARGB);
+			final Graphics2D g = image.createGraphics();
+			g.setColor(new Color(0, 0, 0, 32));
+			g.fillRect(1, 1, size - 2, size - 2);
+			g.dispose();
+			placeholder = new Picture(image);
+			placeholders.put(size, placeholder);
+		}
+		return placeholder;
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		executor.shutdownNow();
+		synchronized (cache) {
+			cache.clear();
+			pixels = 0;
+		}
+	}
+
+	// -- Helper methods --
+
+	private Picture get(final Key key) {
+		synchronized (cache) {
+			return cache.get(key);
+		}
+	}
+
+	private Picture read(final Key key, final URL url) {
+		final BufferedImage source;
+		try {
+			source = ImageIO.read(url);
+		}
+		catch (final IOException exc) {
+			return null;
+		}
+		if (source == null) return null; // unsupported format
+
+		final Picture icon = new Picture(scale(source, key.size));
+		final BufferedImage image = icon.getBufferedImage();
+		synchronized (cache) {
+			final Picture previous = cache.put(key, icon);
+			if (previous != null) pixels -= pixels(previous);
+			pixels += (long) image.getWidth() * image.getHeight();
+			// evict least recently used icons until within capacity
+			final Iterator<Picture> iter = cache.values().iterator();
+			while (pixels > capacity && iter.hasNext()) {
+				final Picture eldest = iter.next();
+				if (eldest == icon) break;
+				pixels -= pixels(eldest);
+				iter.remove();
+			}
+		}
+		return icon;
+	}
+
+	/** Scales the image, preserving aspect ratio, to fit the given size. */
+	private BufferedImage scale(final BufferedImage source, final int size) {
+		final int w = source.getWidth(), h = source.getHeight();
+		if (w <= size && h <= size && source
+			.getType() == BufferedImage.TYPE_INT_ARGB)
+		{
+			return source;
+		}
+		final double factor = Math.min(1.0, (double) size / Math.max(w, h));
+		final int sw = Math.max(1, (int) Math.round(w * factor));
+		final int sh = Math.max(1, (int) Math.round(h * factor));
+		final BufferedImage scaled = new BufferedImage(sw, sh,
+			BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+			RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(source, 0, 0, sw, sh, null);
+		g.dispose();
+		return scaled;
+	}
+
+	private static long pixels(final Picture picture) {
+		final BufferedImage image = picture.getBufferedImage();
+		return (long) image.getWidth() * image.getHeight();
+	}
+
+	// -- Helper classes --
+
+	/** Cache key of an icon. */
+	private static class Key {
+
+		/** External form of the URL, since {@link URL#equals} may block. */
+		private final String url;
+
+		private final int size;
+
+		private Key(final String url, final int size) {
+			this.url = url;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key key = (Key) o;
+			return size == key.size && url.equals(key.url);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * url.hashCode() + size;
+		}
+	}
+
+}
@@ -0,0 +1,352 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.pivot.wtk.Alert;
+import org.apache.pivot.wtk.ApplicationContext;
+import org.apache.pivot.wtk.Expander;
+import org.apache.pivot.wtk.ListView;
+import org.apache.pivot.wtk.ScrollPane;
+import org.apache.pivot.wtk.Window;
+import org.scijava.ui.DialogPrompt.MessageType;
+import org.scijava.ui.DialogPrompt.OptionType;
+import org.scijava.ui.DialogPrompt.Result;
+
+/**
+ * Folds bursts of informational alerts into a single summary dialog.
+ * <p>
+ * Prompts which ask the user a question are always shown individually. But
+ * plain messages ({@link OptionType#DEFAULT_OPTION}) arriving while a summary
+ * is open are added to it instead of opening another alert, grouped by similar
+ * text (ignoring digits) with a count per group. After a summary closes, the
+ * same messages are suppressed for a short interval. Every message is recorded
+ * in a bounded history, so none is lost.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotAlertAggregator {
+
+	/** Default number of messages kept in the history. */
+	public static final int DEFAULT_HISTORY_SIZE = 1000;
+
+	/** Default interval during which repeated messages are suppressed (ms). */
+	public static final long DEFAULT_INTERVAL = 2000;
+
+	/** Maximum number of distinct groups listed in a summary. */
+	private static final int MAX_GROUPS = 100;
+
+	/** Maximum length of message text used to group similar messages. */
+	private static final int MAX_KEY_LENGTH = 200;
+
+	private final int historySize;
+	private final long interval;
+
+	private final ArrayDeque<Record> history = new ArrayDeque<>();
+
+	/** Time each message group was last shown, in milliseconds. */
+	private final Map<String, Long> lastShown = new LinkedHashMap<>();
+
+	/** The currently open summary, if any. */
+	private Summary summary;
+
+	private long suppressed;
+
+	public PivotAlertAggregator() {
+		this(DEFAULT_HISTORY_SIZE, DEFAULT_INTERVAL);
+	}
+
+	public PivotAlertAggregator(final int historySize, final long interval) {
+		this.historySize = historySize;
+		this.interval = interval;
+	}
+
+	// -- PivotAlertAggregator methods --
+
+	/**
+	 * Creates a dialog prompt which, if it merely informs the user, is folded
+	 * into any summary already being shown.
+	 */
+	public PivotDialogPrompt dialogPrompt(final String message,
+		final String title, final MessageType messageType,
+		final OptionType optionType, final Window owner)
+	{
+		if (optionType != OptionType.DEFAULT_OPTION) {
+			return new PivotDialogPrompt(message, title, messageType, optionType,
+				owner);
+		}
+		return new FoldedPrompt(message, title, messageType, owner);
+	}
+
+	/** Gets the most recent messages, oldest first. */
+	public synchronized List<Record> getHistory() {
+		return new ArrayList<>(history);
+	}
+
+	/** Gets the number of messages suppressed without being shown. */
+	public synchronized long getSuppressedCount() {
+		return suppressed;
+	}
+
+	// -- Helper methods --
+
+	private synchronized CompletableFuture<Result> submit(
+		final PivotDialogPrompt prompt)
+	{
+		final long now = System.currentTimeMillis();
+		final Record record = new Record(now, prompt);
+		history.addLast(record);
+		while (history.size() > historySize) {
+			history.removeFirst();
+		}
+
+		final String key = key(prompt);
+		if (summary != null) {
+			summary.add(key, record);
+			return summary.answer();
+		}
+
+		final Long last = lastShown.get(key);
+		if (last != null && now - last < interval) {
+			suppressed++;
+			return CompletableFuture.completedFuture(Result.OK_OPTION);
+		}
+
+		summary = new Summary(prompt);
+		summary.add(key, record);
+		ApplicationContext.queueCallback(summary::open);
+		return summary.answer();
+	}
+
+	private synchronized void failed(final Summary s) {
+		if (summary == s) summary = null;
+	}
+
+	private synchronized void closed(final Summary s, final long now) {
+		if (summary == s) summary = null;
+		for (final String key : s.groups.keySet()) {
+			lastShown.put(key, now);
+		}
+		// discard groups which can no longer be suppressed
+		final Iterator<Long> iter = lastShown.values().iterator();
+		while (iter.hasNext()) {
+			if (now - iter.next() >= interval) iter.remove();
+		}
+	}
+
+	/** Gets a message's grouping key: its type, title and text sans digits. */
+	private static String key(final PivotDialogPrompt prompt) {
+		String text = String.valueOf(prompt.getMessage()).replaceAll("[0-9]+", "#")
+			.trim();
+		if (text.length() > MAX_KEY_LENGTH) {
+			text = text.substring(0, MAX_KEY_LENGTH);
+		}
+		return prompt.getMessageType() + "|" + prompt.getTitle() + "|" + text;
+	}
+
+	// -- Helper classes --
+
+	/** A message submitted to the aggregator. */
+	public static class Record {
+
+		private final long time;
+		private final String message;
+		private final String title;
+		private final MessageType messageType;
+
+		private Record(final long time, final PivotDialogPrompt prompt) {
+			this.time = time;
+			this.message = prompt.getMessage();
+			this.title = prompt.getTitle();
+			this.messageType = prompt.getMessageType();
+		}
+
+		/** Gets the time the message was submitted, in milliseconds. */
+		public long getTime() {
+			return time;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public MessageType getMessageType() {
+			return messageType;
+		}
+	}
+
+	/** Informational prompt which may be folded into a summary. */
+	private class FoldedPrompt extends PivotDialogPrompt {
+
+		private CompletableFuture<Result> answer;
+
+		private FoldedPrompt(final String message, final String title,
+			final MessageType messageType, final Window owner)
+		{
+			super(message, title, messageType, OptionType.DEFAULT_OPTION, owner);
+		}
+
+		@Override
+		public synchronized CompletableFuture<Result> promptAsync() {
+			if (answer == null) answer = submit(this);
+			return answer;
+		}
+	}
+
+	/** Messages which share a grouping key. */
+	private static class Group {
+
+		private final String sample;
+		private int count;
+
+		private Group(final String sample) {
+			this.sample = sample;
+		}
+
+		@Override
+		public String toString() {
+			return count == 1 ? sample : count + " x " + sample;
+		}
+	}
+
+	/** A single alert standing in for any number of messages. */
+	private class Summary {
+
+		private final PivotDialogPrompt first;
+		private final CompletableFuture<Result> result = new CompletableFuture<>();
+		private final LinkedHashMap<String, Group> groups = new LinkedHashMap<>();
+		private int total;
+		private int ungrouped;
+
+		private Alert alert;
+		private Expander expander;
+		private ListView listView;
+		private boolean refreshQueued;
+
+		private Summary(final PivotDialogPrompt first) {
+			this.first = first;
+		}
+
+		/**
+		 * Gets a future for one folded prompt's answer. Each prompt gets its own,
+		 * so that cancelling one (e.g., when its waiting thread is interrupted)
+		 * leaves the summary and the other prompts unaffected.
+		 */
+		private CompletableFuture<Result> answer() {
+			return result.thenApply(r -> r);
+		}
+
+		/** Adds a message. Call while holding the aggregator's lock. */
+		private void add(final String key, final Record record) {
+			total++;
+			Group group = groups.get(key);
+			if (group == null) {
+				if (groups.size() >= MAX_GROUPS) {
+					ungrouped++;
+				}
+				else {
+					group = new Group(record.getMessage());
+					groups.put(key, group);
+				}
+			}
+			if (group != null) group.count++;
+
+			// coalesce updates to the open alert
+			if (alert != null && !refreshQueued) {
+				refreshQueued = true;
+				ApplicationContext.queueCallback(this::refresh);
+			}
+		}
+
+		private void open() {
+			alert = new Alert(PivotDialogPrompt.toPivot(first.getMessageType()),
+				first.getMessage(), new org.apache.pivot.collections.ArrayList<>(
+					"OK"));
+			if (first.getTitle() != null) alert.setTitle(first.getTitle());
+			alert.setSelectedOptionIndex(0);
+
+			listView = new ListView();
+			final ScrollPane scrollPane = new ScrollPane();
+			scrollPane.setView(listView);
+			scrollPane.setPreferredHeight(200);
+			expander = new Expander();
+			expander.setExpanded(false);
+			expander.setContent(scrollPane);
+			refresh();
+
+			try {
+				alert.open(first.getOwner(), (dialog, modal) -> {
+					closed(this, System.currentTimeMillis());
+					result.complete(Result.OK_OPTION);
+				});
+			}
+			catch (final RuntimeException exc) {
+				// NB: E.g., the owner is not open. Stop folding messages into this
+				// summary, and do not leave the prompts waiting.
+				failed(this);
+				result.completeExceptionally(exc);
+			}
+		}
+
+		private void refresh() {
+			final org.apache.pivot.collections.ArrayList<String> items =
+				new org.apache.pivot.collections.ArrayList<>();
+			final int count;
+			final int distinct;
+			synchronized (PivotAlertAggregator.this) {
+				refreshQueued = false;
+				for (final Group group : groups.values()) {
+					items.add(group.toString());
+				}
+				if (ungrouped > 0) items.add(ungrouped + " more messages");
+				count = total;
+				distinct = groups.size();
+			}
+			if (count <= 1) return;
+			expander.setTitle(count + " messages (" + distinct + " distinct)");
+			listView.setListData(items);
+			if (alert.getBody() == null) alert.setBody(expander);
+		}
+	}
+
+}
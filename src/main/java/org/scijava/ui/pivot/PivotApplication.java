@@ -30,17 +30,37 @@
 
 package org.scijava.ui.pivot;
 
-import org.apache.pivot.collections.Map;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.apache.pivot.wtk.Action;
 import org.apache.pivot.wtk.Application;
+import org.apache.pivot.wtk.ApplicationContext;
 import org.apache.pivot.wtk.BoxPane;
+import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.DesktopApplicationContext;
 import org.apache.pivot.wtk.Display;
+import org.apache.pivot.wtk.Keyboard;
 import org.apache.pivot.wtk.Orientation;
+import org.apache.pivot.wtk.Platform;
+import org.apache.pivot.wtk.Window;
 import org.scijava.AbstractContextual;
 import org.scijava.app.AppService;
 import org.scijava.event.EventService;
+import org.scijava.log.LogService;
 import org.scijava.menu.MenuService;
+import org.scijava.menu.ShadowMenu;
 import org.scijava.platform.event.AppMenusCreatedEvent;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
+import org.scijava.ui.pivot.menu.AcceleratorTable;
+import org.scijava.ui.pivot.menu.CommandDispatcher;
+import org.scijava.ui.pivot.menu.CommandIndex;
+import org.scijava.ui.pivot.menu.PivotCommandFinder;
 import org.scijava.ui.pivot.menu.PivotMenuCreator;
 
 /**
@@ -60,6 +80,19 @@ public class PivotApplication extends AbstractContextual implements Application
 	@Parameter
 	private AppService appService;
 
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private LogService log;
+
+	/** Future to complete when the next application instance starts up. */
+	private static CompletableFuture<PivotApplication> pendingStartup;
+
+	/** Elapsed time of each startup phase, in milliseconds. */
+	private final Map<String, Long> phaseTimes =
+		Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
 	private Display display;
 
 	private PivotApplicationFrame frame;
@@ -68,30 +101,124 @@ public class PivotApplication extends AbstractContextual implements Application
 
 	private BoxPane contentPane;
 
+	/** Launches commands chosen from the menus. */
+	private CommandDispatcher dispatcher;
+
+	/** Icons shown in the menus and tool bar. */
+	private IconCache iconCache;
+
+	/** Keeps the menu bar in sync with the menu tree. */
+	private PivotMenuCreator menuCreator;
+
+	/** Search index over all commands, kept in sync with the menu tree. */
+	private CommandIndex commandIndex;
+
+	/** Keyboard accelerators of all commands, kept in sync with the menu tree. */
+	private AcceleratorTable acceleratorTable;
+
+	/** Samples resource usage, and probes the event dispatch thread. */
+	private RuntimeMonitor monitor;
+
+	/** Logs stalls of the event dispatch thread. */
+	private EventThreadWatchdog watchdog;
+
 	// -- PivotApplication methods --
 
-	public void initialize() {
-		frame = new PivotApplicationFrame();
+	/**
+	 * Gets a future which completes when Pivot next starts up an instance of
+	 * {@link PivotApplication}. This must be called <em>before</em> launching
+	 * the application via {@link DesktopApplicationContext#main}.
+	 */
+	public static synchronized CompletableFuture<PivotApplication>
+		awaitStartup()
+	{
+		if (pendingStartup == null) pendingStartup = new CompletableFuture<>();
+		return pendingStartup;
+	}
 
-		toolBar = new PivotToolBar(getContext());
-		statusBar = new PivotStatusBar(getContext());
+	/**
+	 * Builds the application UI. The models behind the bars - the command index
+	 * and accelerator table, and with them the menu tree, and the tool bar's
+	 * tools and icons - are constructed in parallel on the
+	 * {@link ThreadService}'s executor. The Pivot components - menu bar, tool
+	 * bar, status bar and frame - are then built from them, and the frame is
+	 * opened, on the event dispatch thread, since Pivot components must not be
+	 * touched off it.
+	 * 
+	 * @return A future which completes once the frame has been opened.
+	 */
+	public CompletableFuture<PivotApplication> initialize() {
+		final long start = System.nanoTime();
+		final Executor executor = threadService.getExecutorService();
+		final Executor edt = r -> ApplicationContext.queueCallback(r);
 
-		contentPane = new BoxPane();
-		contentPane.setOrientation(Orientation.VERTICAL);
-		frame.setContent(contentPane);
+		if (monitor == null) {
+			monitor = new RuntimeMonitor(threadService);
+			watchdog = new EventThreadWatchdog(monitor, log);
+		}
+		dispatcher = new CommandDispatcher(getContext());
+		iconCache = new IconCache(threadService);
+		menuCreator = new PivotMenuCreator(dispatcher, iconCache);
+		final CompletableFuture<CommandIndex> commands = CompletableFuture
+			.supplyAsync(timed("commands", () -> new CommandIndex(menuService
+				.getMenu())), executor);
+		final CompletableFuture<AcceleratorTable> accelerators = CompletableFuture
+			.supplyAsync(timed("accelerators", () -> new AcceleratorTable(
+				menuService.getMenu(), log)), executor);
+		final CompletableFuture<PivotToolBar.Model> tools = CompletableFuture
+			.supplyAsync(timed("tools", () -> new PivotToolBar.Model(getContext(),
+				iconCache)), executor);
 
-		// create menus
-		final BoxPane menuPane =
-			menuService.createMenus(new PivotMenuCreator(), new BoxPane());
-		contentPane.add(menuPane);
-		eventService.publish(new AppMenusCreatedEvent(menuPane));
+		return CompletableFuture.allOf(commands, accelerators, tools)
+			.thenApplyAsync(result -> {
+				commandIndex = commands.join();
+				acceleratorTable = accelerators.join();
+				final BoxPane menus = timed("menus", () -> menuService.createMenus(
+					menuCreator, new BoxPane())).get();
+				toolBar = timed("toolbar", () -> new PivotToolBar(getContext(), tools
+					.join())).get();
+				statusBar = timed("statusbar", () -> new PivotStatusBar(
+					getContext(), monitor)).get();
+				timed("frame", () -> {
+					openFrame(menus);
+					return frame;
+				}).get();
+				record("total", start);
+				return this;
+			}, edt);
+	}
 
-		contentPane.add(toolBar);
-		contentPane.add(statusBar);
+	/**
+	 * Opens a sheet over the application frame for finding and running a
+	 * command by name. Call on the event dispatch thread.
+	 */
+	public void showCommandFinder() {
+		if (frame == null || commandIndex == null) return;
+		final PivotCommandFinder finder = new PivotCommandFinder(commandIndex);
+		finder.open(frame, sheet -> {
+			final ShadowMenu command = finder.getSelectedCommand();
+			if (sheet.getResult() && command != null) dispatcher.dispatch(command);
+		});
+	}
 
-		frame.setTitle(appService.getApp().getTitle());
-		frame.setMaximized(true);
-		frame.open(display);
+	public IconCache getIconCache() {
+		return iconCache;
+	}
+
+	public CommandDispatcher getCommandDispatcher() {
+		return dispatcher;
+	}
+
+	public CommandIndex getCommandIndex() {
+		return commandIndex;
+	}
+
+	public RuntimeMonitor getRuntimeMonitor() {
+		return monitor;
+	}
+
+	public EventThreadWatchdog getWatchdog() {
+		return watchdog;
 	}
 
 	public Display getDisplay() {
@@ -110,16 +237,39 @@ public class PivotApplication extends AbstractContextual implements Application
 		return statusBar;
 	}
 
+	/**
+	 * Gets the elapsed time of each startup phase, in milliseconds, keyed on
+	 * phase name.
+	 */
+	public Map<String, Long> getPhaseTimes() {
+		synchronized (phaseTimes) {
+			return new LinkedHashMap<>(phaseTimes);
+		}
+	}
+
 	// -- Application methods --
 
 	@Override
-	public void startup(final Display d, final Map<String, String> props) {
+	public void startup(final Display d,
+		final org.apache.pivot.collections.Map<String, String> props)
+	{
 		display = d;
+		final CompletableFuture<PivotApplication> startup;
+		synchronized (PivotApplication.class) {
+			startup = pendingStartup;
+			pendingStartup = null;
+		}
+		if (startup != null) startup.complete(this);
 	}
 
 	@Override
 	public boolean shutdown(final boolean optional) {
 		if (frame != null) frame.close();
+		if (dispatcher != null) dispatcher.dispose();
+		if (iconCache != null) iconCache.dispose();
+		if (statusBar != null) statusBar.setHUDVisible(false);
+		if (watchdog != null) watchdog.dispose();
+		if (monitor != null) monitor.dispose();
 		return false;
 	}
 
@@ -133,4 +283,61 @@ public class PivotApplication extends AbstractContextual implements Application
 		// NB: no action needed.
 	}
 
+	// -- Helper methods --
+
+	private void openFrame(final BoxPane menuPane) {
+		frame = new PivotApplicationFrame();
+
+		contentPane = new BoxPane();
+		contentPane.setOrientation(Orientation.VERTICAL);
+		frame.setContent(contentPane);
+
+		contentPane.add(menuPane);
+		eventService.subscribe(menuCreator);
+		eventService.subscribe(commandIndex);
+		eventService.subscribe(acceleratorTable);
+		// NB: Catch up on menu events published while the snapshots were taken.
+		menuCreator.sync();
+		commandIndex.sync();
+		acceleratorTable.sync();
+		frame.setAccelerators(acceleratorTable, dispatcher);
+		eventService.publish(new AppMenusCreatedEvent(menuPane));
+
+		contentPane.add(toolBar);
+		contentPane.add(statusBar);
+
+		frame.getActionMappings().add(new Window.ActionMapping(
+			new Keyboard.KeyStroke(Keyboard.KeyCode.L, Platform.getCommandModifier()
+				.getMask()), new Action() {
+
+					@Override
+					public void perform(final Component source) {
+						showCommandFinder();
+					}
+				}));
+
+		frame.setTitle(appService.getApp().getTitle());
+		frame.setMaximized(true);
+		frame.open(display);
+	}
+
+	private <T> Supplier<T> timed(final String phase, final Supplier<T> task) {
+		return () -> {
+			final long start = System.nanoTime();
+			try {
+				return task.get();
+			}
+			finally {
+				record(phase, start);
+			}
+		};
+	}
+
+	private void record(final String phase, final long start) {
+		final long ms = (System.nanoTime() - start) / 1000000;
+		phaseTimes.put(phase, ms);
+		if (log != null) log.debug("Pivot startup: " + phase + " took " + ms +
+			" ms");
+	}
+
 }
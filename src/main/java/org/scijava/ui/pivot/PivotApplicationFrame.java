@@ -30,16 +30,48 @@
 
 package org.scijava.ui.pivot;
 
+import org.apache.pivot.wtk.Component;
 import org.apache.pivot.wtk.Frame;
+import org.apache.pivot.wtk.Keyboard;
+import org.apache.pivot.wtk.TextArea;
+import org.apache.pivot.wtk.TextInput;
+import org.scijava.menu.ShadowMenu;
 import org.scijava.ui.ApplicationFrame;
+import org.scijava.ui.pivot.menu.AcceleratorTable;
+import org.scijava.ui.pivot.menu.CommandDispatcher;
 
 /**
  * Pivot implementation of {@link ApplicationFrame}.
+ * <p>
+ * Keystrokes which reach the frame unconsumed are looked up in its
+ * {@link AcceleratorTable}, and the command bound to them, if any, is
+ * launched.
+ * </p>
  * 
  * @author Curtis Rueden
  */
 public class PivotApplicationFrame extends Frame implements ApplicationFrame {
 
+	private AcceleratorTable accelerators;
+	private CommandDispatcher dispatcher;
+
+	// -- PivotApplicationFrame methods --
+
+	/**
+	 * Sets the table of keyboard accelerators handled by the frame, and the
+	 * dispatcher through which their commands are launched.
+	 */
+	public void setAccelerators(final AcceleratorTable accelerators,
+		final CommandDispatcher dispatcher)
+	{
+		this.accelerators = accelerators;
+		this.dispatcher = dispatcher;
+	}
+
+	public AcceleratorTable getAccelerators() {
+		return accelerators;
+	}
+
 	// -- ApplicationFrame methods --
 
 	@Override
@@ -62,4 +94,34 @@ public class PivotApplicationFrame extends Frame implements ApplicationFrame {
 		// unsupported operation; ignore
 	}
 
+	// -- Component methods --
+
+	@Override
+	protected boolean keyPressed(final int keyCode,
+		final Keyboard.KeyLocation keyLocation)
+	{
+		if (accelerators != null && isEnabled()) {
+			final int modifiers = Keyboard.getModifiers();
+			if (modifiers != 0 || !isEditingText()) {
+				final ShadowMenu command = accelerators.get(new Keyboard.KeyStroke(
+					keyCode, modifiers));
+				// NB: Like its menu item, a disabled command ignores its keystroke.
+				if (command != null && command.getModuleInfo().isEnabled()) {
+					// NB: Key repeats are coalesced by the dispatcher.
+					dispatcher.dispatch(command);
+					return true;
+				}
+			}
+		}
+		return super.keyPressed(keyCode, keyLocation);
+	}
+
+	// -- Helper methods --
+
+	/** Whether unmodified keystrokes are being typed into a text component. */
+	private boolean isEditingText() {
+		final Component focused = Component.getFocusedComponent();
+		return focused instanceof TextInput || focused instanceof TextArea;
+	}
+
 }
@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.awt.EventQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.wtk.Alert;
+import org.apache.pivot.wtk.ApplicationContext;
+import org.apache.pivot.wtk.Window;
+import org.scijava.ui.DialogPrompt;
+
+/**
+ * Pivot implementation of {@link DialogPrompt}, backed by an {@link Alert}.
+ * <p>
+ * The alert is shown when {@link #prompt()} or {@link #promptAsync()} is first
+ * called. {@link #prompt()} parks the calling thread until the user answers;
+ * {@link #promptAsync()} returns immediately, so callers can attach a
+ * completion callback instead.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotDialogPrompt implements DialogPrompt {
+
+	private final String message;
+	private final String title;
+	private final MessageType messageType;
+	private final OptionType optionType;
+	private final Window owner;
+
+	private final AtomicBoolean shown = new AtomicBoolean();
+	private final CompletableFuture<Result> result = new CompletableFuture<>();
+
+	public PivotDialogPrompt(final String message, final String title,
+		final MessageType messageType, final OptionType optionType,
+		final Window owner)
+	{
+		this.message = message;
+		this.title = title;
+		this.messageType = messageType;
+		this.optionType = optionType;
+		this.owner = owner;
+	}
+
+	// -- PivotDialogPrompt methods --
+
+	public String getMessage() {
+		return message;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public MessageType getMessageType() {
+		return messageType;
+	}
+
+	public OptionType getOptionType() {
+		return optionType;
+	}
+
+	public Window getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Shows the alert, if not already shown, without waiting for the user.
+	 * Cancelling the returned future closes the alert.
+	 * 
+	 * @return A future which completes with the user's answer.
+	 */
+	public CompletableFuture<Result> promptAsync() {
+		if (shown.compareAndSet(false, true)) {
+			ApplicationContext.queueCallback(this::open);
+		}
+		return result;
+	}
+
+	// -- DialogPrompt methods --
+
+	/**
+	 * Shows the alert and waits for the user's answer. Since the alert can only
+	 * be answered on the event dispatch thread, calling this method there does
+	 * not wait: the alert is shown and {@link Result#CLOSED_OPTION} returned.
+	 */
+	@Override
+	public Result prompt() {
+		final CompletableFuture<Result> answer = promptAsync();
+		if (EventQueue.isDispatchThread() && !answer.isDone()) {
+			return Result.CLOSED_OPTION;
+		}
+		try {
+			return answer.get();
+		}
+		catch (final InterruptedException exc) {
+			answer.cancel(false);
+			Thread.currentThread().interrupt();
+		}
+		catch (final CancellationException exc) {
+			// NB: The caller of promptAsync() gave up on the answer.
+		}
+		catch (final ExecutionException exc) {
+			// NB: Only possible if the alert could not be shown.
+		}
+		return Result.CLOSED_OPTION;
+	}
+
+	// -- Utility methods --
+
+	/** Converts a SciJava message type to its Pivot equivalent. */
+	public static org.apache.pivot.wtk.MessageType toPivot(
+		final MessageType messageType)
+	{
+		switch (messageType) {
+			case ERROR_MESSAGE:
+				return org.apache.pivot.wtk.MessageType.ERROR;
+			case QUESTION_MESSAGE:
+				return org.apache.pivot.wtk.MessageType.QUESTION;
+			case WARNING_MESSAGE:
+				return org.apache.pivot.wtk.MessageType.WARNING;
+			default:
+				return org.apache.pivot.wtk.MessageType.INFO;
+		}
+	}
+
+	/** Gets the results corresponding to the buttons of the given type. */
+	public static Result[] results(final OptionType optionType) {
+		switch (optionType) {
+			case YES_NO_OPTION:
+				return new Result[] { Result.YES_OPTION, Result.NO_OPTION };
+			case YES_NO_CANCEL_OPTION:
+				return new Result[] { Result.YES_OPTION, Result.NO_OPTION,
+					Result.CANCEL_OPTION };
+			case OK_CANCEL_OPTION:
+				return new Result[] { Result.OK_OPTION, Result.CANCEL_OPTION };
+			default:
+				return new Result[] { Result.OK_OPTION };
+		}
+	}
+
+	// -- Helper methods --
+
+	private void open() {
+		if (result.isDone()) return; // canceled before the alert was shown
+
+		final Result[] results = results(optionType);
+		final ArrayList<String> options = new ArrayList<>();
+		for (final Result r : results) {
+			options.add(label(r));
+		}
+
+		final Alert alert = new Alert(toPivot(messageType), message, options);
+		if (title != null) alert.setTitle(title);
+		alert.setSelectedOptionIndex(0);
+
+		// close the alert if the caller gives up on it
+		result.whenComplete((value, exc) -> {
+			if (exc != null) ApplicationContext.queueCallback(() -> {
+				if (alert.isOpen()) alert.close(false);
+			});
+		});
+
+		try {
+			alert.open(owner, (dialog, modal) -> {
+				final int index = alert.getSelectedOptionIndex();
+				final boolean answered = dialog.getResult() && index >= 0 &&
+					index < results.length;
+				result.complete(answered ? results[index] : Result.CLOSED_OPTION);
+			});
+		}
+		catch (final RuntimeException exc) {
+			// NB: E.g., the owner is not open. Do not leave the caller waiting.
+			result.completeExceptionally(exc);
+		}
+	}
+
+	private static String label(final Result r) {
+		switch (r) {
+			case YES_OPTION:
+				return "Yes";
+			case NO_OPTION:
+				return "No";
+			case CANCEL_OPTION:
+				return "Cancel";
+			default:
+				return "OK";
+		}
+	}
+
+}
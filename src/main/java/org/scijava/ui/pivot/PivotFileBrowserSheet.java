@@ -0,0 +1,350 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.io.File;
+import java.io.FileFilter;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.util.Filter;
+import org.apache.pivot.wtk.ApplicationContext;
+import org.apache.pivot.wtk.BoxPane;
+import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.ComponentMouseButtonListener;
+import org.apache.pivot.wtk.Display;
+import org.apache.pivot.wtk.FileBrowserSheet.Mode;
+import org.apache.pivot.wtk.Label;
+import org.apache.pivot.wtk.ListView;
+import org.apache.pivot.wtk.ListViewSelectionListener;
+import org.apache.pivot.wtk.Mouse;
+import org.apache.pivot.wtk.Orientation;
+import org.apache.pivot.wtk.PushButton;
+import org.apache.pivot.wtk.ScrollPane;
+import org.apache.pivot.wtk.Sheet;
+import org.apache.pivot.wtk.SheetCloseListener;
+import org.apache.pivot.wtk.Span;
+import org.apache.pivot.wtk.TextInput;
+import org.apache.pivot.wtk.TextInputContentListener;
+import org.apache.pivot.wtk.Window;
+
+/**
+ * File browser sheet whose contents come from a {@link DirectoryListingCache}.
+ * <p>
+ * Pivot's own {@link org.apache.pivot.wtk.FileBrowserSheet} lists directories
+ * itself and adds each file to its table in a separate event dispatch thread
+ * callback, which freezes the interface on directories with many thousands of
+ * files. This sheet instead shows each directory's cached, presorted listing
+ * in one step, and never touches the file system on the event dispatch
+ * thread. It supports the same {@link Mode}s.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotFileBrowserSheet extends Sheet {
+
+	private final Mode mode;
+	private final DirectoryListingCache cache;
+
+	private final Label pathLabel;
+	private final PushButton upButton;
+	private final ListView fileList;
+	private final TextInput nameInput;
+	private final PushButton okButton;
+
+	private File rootDirectory;
+	private FileFilter disabledFileFilter;
+
+	/** Entries of the current directory, or null until its listing arrives. */
+	private ArrayList<Item> items;
+
+	/** File to select once the current listing arrives. */
+	private File pendingSelection;
+
+	/** Number of the latest directory change, to discard stale listings. */
+	private long generation;
+
+	public PivotFileBrowserSheet(final Mode mode,
+		final DirectoryListingCache cache)
+	{
+		this.mode = mode;
+		this.cache = cache;
+
+		pathLabel = new Label();
+		upButton = new PushButton("Up");
+		upButton.getButtonPressListeners().add(b -> {
+			final File parent = rootDirectory.getParentFile();
+			if (parent != null) setRootDirectory(parent);
+		});
+		final BoxPane top = new BoxPane();
+		top.add(upButton);
+		top.add(pathLabel);
+
+		fileList = new ListView();
+		fileList.setSelectMode(mode == Mode.OPEN_MULTIPLE
+			? ListView.SelectMode.MULTI : ListView.SelectMode.SINGLE);
+		fileList.setDisabledItemFilter((Filter<Item>) this::isDisabled);
+		fileList.getListViewSelectionListeners().add(
+			new ListViewSelectionListener.Adapter()
+			{
+
+				@Override
+				public void selectedRangesChanged(final ListView listView,
+					final Sequence<Span> previousSelectedRanges)
+				{
+					selectionChanged();
+				}
+			});
+		fileList.getComponentMouseButtonListeners().add(
+			new ComponentMouseButtonListener.Adapter()
+			{
+
+				@Override
+				public boolean mouseClick(final Component component,
+					final Mouse.Button button, final int x, final int y,
+					final int count)
+				{
+					if (count != 2) return false;
+					final int index = fileList.getItemAt(y);
+					if (index < 0) return false;
+					final Item item = items.get(index);
+					if (item.directory) setRootDirectory(item.file);
+					else if (!isDisabled(item)) close(true);
+					return false;
+				}
+			});
+		final ScrollPane scrollPane = new ScrollPane();
+		scrollPane.setHorizontalScrollBarPolicy(ScrollPane.ScrollBarPolicy.FILL);
+		scrollPane.setView(fileList);
+		// NB: A fixed size avoids measuring every item of large listings.
+		scrollPane.setPreferredSize(480, 300);
+
+		nameInput = new TextInput();
+		nameInput.setTextSize(40);
+		nameInput.getTextInputContentListeners().add(
+			new TextInputContentListener.Adapter()
+			{
+
+				@Override
+				public void textChanged(final TextInput textInput) {
+					updateButtons();
+				}
+			});
+
+		okButton = new PushButton("OK");
+		okButton.getButtonPressListeners().add(b -> close(true));
+		final PushButton cancelButton = new PushButton("Cancel");
+		cancelButton.getButtonPressListeners().add(b -> close(false));
+		final BoxPane buttons = new BoxPane();
+		buttons.getStyles().put("horizontalAlignment", "right");
+		buttons.add(okButton);
+		buttons.add(cancelButton);
+
+		final BoxPane pane = new BoxPane(Orientation.VERTICAL);
+		pane.getStyles().put("fill", true);
+		pane.add(top);
+		pane.add(scrollPane);
+		if (mode == Mode.SAVE_AS) pane.add(nameInput);
+		pane.add(buttons);
+		setContent(pane);
+	}
+
+	// -- PivotFileBrowserSheet methods --
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public File getRootDirectory() {
+		return rootDirectory;
+	}
+
+	/**
+	 * Shows the given directory. Its listing is requested from the cache, and
+	 * shown once available unless another directory has been shown since.
+	 */
+	public void setRootDirectory(final File dir) {
+		final long dirGeneration = ++generation;
+		rootDirectory = dir.getAbsoluteFile();
+		pendingSelection = null;
+		pathLabel.setText(rootDirectory.getPath());
+		upButton.setEnabled(rootDirectory.getParentFile() != null);
+		items = null;
+		fileList.setListData(new ArrayList<Item>());
+		updateButtons();
+
+		cache.list(rootDirectory).whenComplete((listing, exc) -> {
+			final ArrayList<Item> loaded;
+			if (listing == null) loaded = null;
+			else {
+				loaded = new ArrayList<>(listing.getFiles().size());
+				for (final File file : listing.getFiles()) {
+					loaded.add(new Item(file, listing.isDirectory(file)));
+				}
+			}
+			ApplicationContext.queueCallback(() -> {
+				if (generation != dirGeneration) return; // superseded
+				if (loaded == null) {
+					pathLabel.setText(rootDirectory.getPath() + " (cannot be read)");
+					return;
+				}
+				items = loaded;
+				fileList.setListData(items);
+				if (pendingSelection != null) select(pendingSelection);
+				pendingSelection = null;
+				updateButtons();
+			});
+		});
+	}
+
+	/**
+	 * Selects the given file of the current directory, once its listing is
+	 * available. In {@link Mode#SAVE_AS} mode, the file need not exist.
+	 */
+	public void setSelectedFile(final File file) {
+		final File absFile = file.getAbsoluteFile();
+		if (mode == Mode.SAVE_AS) nameInput.setText(absFile.getName());
+		if (items == null) pendingSelection = absFile;
+		else select(absFile);
+	}
+
+	/** Gets the chosen file, or null if none. */
+	public File getSelectedFile() {
+		final Sequence<File> files = getSelectedFiles();
+		return files.getLength() == 0 ? null : files.get(0);
+	}
+
+	/**
+	 * Gets the chosen files: the selected files in the open modes, the named
+	 * file in {@link Mode#SAVE_AS} mode, or the selected (or else current)
+	 * directory in {@link Mode#SAVE_TO} mode.
+	 */
+	public Sequence<File> getSelectedFiles() {
+		final ArrayList<File> files = new ArrayList<>();
+		switch (mode) {
+			case SAVE_AS:
+				final String name = nameInput.getText().trim();
+				if (!name.isEmpty()) files.add(new File(rootDirectory, name));
+				break;
+			case SAVE_TO:
+				final Item dir = (Item) fileList.getSelectedItem();
+				files.add(dir == null ? rootDirectory : dir.file);
+				break;
+			default:
+				final Sequence<?> selected = fileList.getSelectedItems();
+				for (int i = 0; i < selected.getLength(); i++) {
+					final Item item = (Item) selected.get(i);
+					if (!item.directory) files.add(item.file);
+				}
+		}
+		return files;
+	}
+
+	/** Sets the filter of files which may not be chosen, or null for none. */
+	public void setDisabledFileFilter(final FileFilter filter) {
+		disabledFileFilter = filter;
+		fileList.setDisabledItemFilter((Filter<Item>) this::isDisabled);
+	}
+
+	// -- Sheet methods --
+
+	@Override
+	public void open(final Display display, final Window owner,
+		final SheetCloseListener sheetCloseListener)
+	{
+		if (rootDirectory == null) {
+			setRootDirectory(new File(System.getProperty("user.home")));
+		}
+		super.open(display, owner, sheetCloseListener);
+		if (mode == Mode.SAVE_AS) nameInput.requestFocus();
+		else fileList.requestFocus();
+	}
+
+	@Override
+	public void close(final boolean result) {
+		// NB: Ignore confirmation (e.g., via Enter) until there is a choice.
+		if (result && !okButton.isEnabled()) return;
+		super.close(result);
+	}
+
+	// -- Helper methods --
+
+	private boolean isDisabled(final Item item) {
+		if (mode == Mode.SAVE_TO) return !item.directory;
+		if (item.directory) return false;
+		return disabledFileFilter != null && disabledFileFilter.accept(item.file);
+	}
+
+	private void select(final File file) {
+		for (int i = 0; i < items.getLength(); i++) {
+			final Item item = items.get(i);
+			if (!item.file.equals(file)) continue;
+			if (isDisabled(item)) return;
+			fileList.setSelectedIndex(i);
+			fileList.scrollAreaToVisible(fileList.getItemBounds(i));
+			return;
+		}
+	}
+
+	private void selectionChanged() {
+		if (mode == Mode.SAVE_AS) {
+			final Item item = (Item) fileList.getSelectedItem();
+			if (item != null && !item.directory) {
+				nameInput.setText(item.file.getName());
+			}
+		}
+		updateButtons();
+	}
+
+	private void updateButtons() {
+		okButton.setEnabled(getSelectedFiles().getLength() > 0);
+	}
+
+	// -- Helper classes --
+
+	/** Entry of the file list; directories are shown with a trailing slash. */
+	private static class Item {
+
+		private final File file;
+		private final boolean directory;
+
+		private Item(final File file, final boolean directory) {
+			this.file = file;
+			this.directory = directory;
+		}
+
+		@Override
+		public String toString() {
+			return directory ? file.getName() + File.separator : file.getName();
+		}
+	}
+
+}
@@ -0,0 +1,243 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.wtk.ApplicationContext;
+import org.apache.pivot.wtk.FileBrowserSheet;
+import org.apache.pivot.wtk.FileBrowserSheet.Mode;
+import org.apache.pivot.wtk.Sheet;
+import org.apache.pivot.wtk.Window;
+import org.scijava.widget.FileWidget;
+
+/**
+ * Asynchronous file chooser backed by a Pivot sheet.
+ * <p>
+ * Each request returns a {@link CompletableFuture} rather than parking the
+ * calling thread until the sheet closes. Cancelling the future, or letting it
+ * time out, closes the sheet. If a {@link DirectoryListingCache} is given, the
+ * initial directory is resolved in the background and a
+ * {@link PivotFileBrowserSheet} shows listings from the cache; otherwise,
+ * Pivot's own {@link FileBrowserSheet} is used.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotFileChooser {
+
+	private final Window owner;
+	private final DirectoryListingCache cache;
+
+	public PivotFileChooser(final Window owner) {
+		this(owner, null);
+	}
+
+	public PivotFileChooser(final Window owner,
+		final DirectoryListingCache cache)
+	{
+		this.owner = owner;
+		this.cache = cache;
+	}
+
+	// -- PivotFileChooser methods --
+
+	/**
+	 * Prompts for a single file.
+	 * 
+	 * @param title The title of the sheet, or null for the default.
+	 * @param file The initially selected file or directory, or null.
+	 * @param style One of the {@link FileWidget} styles.
+	 * @return A future for the chosen file, which completes with null if the
+	 *         user dismisses the sheet.
+	 */
+	public CompletableFuture<File> chooseFile(final String title,
+		final File file, final String style)
+	{
+		return chooseFile(title, file, style, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * As {@link #chooseFile(String, File, String)}, but completing
+	 * exceptionally with a {@link TimeoutException} (and closing the sheet) if
+	 * the user has not answered within the given time. A non-positive timeout
+	 * means wait indefinitely.
+	 */
+	public CompletableFuture<File> chooseFile(final String title,
+		final File file, final String style, final long timeout,
+		final TimeUnit unit)
+	{
+		return open(title, file, null, mode(style, false), timeout, unit,
+			files -> files.getLength() == 0 ? null : files.get(0));
+	}
+
+	/**
+	 * Prompts for one or more files.
+	 * 
+	 * @param title The title of the sheet, or null for the default.
+	 * @param parent The initial directory, or null.
+	 * @param filter Filter restricting which files may be selected, or null.
+	 * @param style One of the {@link FileWidget} styles.
+	 * @return A future for the chosen files, which completes with null if the
+	 *         user dismisses the sheet.
+	 */
+	public CompletableFuture<List<File>> chooseFiles(final String title,
+		final File parent, final FileFilter filter, final String style)
+	{
+		return chooseFiles(title, parent, filter, style, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * As {@link #chooseFiles(String, File, FileFilter, String)}, but completing
+	 * exceptionally with a {@link TimeoutException} (and closing the sheet) if
+	 * the user has not answered within the given time. A non-positive timeout
+	 * means wait indefinitely.
+	 */
+	public CompletableFuture<List<File>> chooseFiles(final String title,
+		final File parent, final FileFilter filter, final String style,
+		final long timeout, final TimeUnit unit)
+	{
+		return open(title, parent, filter, mode(style, true), timeout, unit,
+			selected -> {
+				final List<File> files = new ArrayList<>();
+				for (int i = 0; i < selected.getLength(); i++) {
+					files.add(selected.get(i));
+				}
+				return files;
+			});
+	}
+
+	// -- Utility methods --
+
+	/**
+	 * Gets the {@link FileBrowserSheet} mode corresponding to the given
+	 * {@link FileWidget} style.
+	 */
+	public static Mode mode(final String style, final boolean multiple) {
+		if (FileWidget.SAVE_STYLE.equals(style)) return Mode.SAVE_AS;
+		if (FileWidget.DIRECTORY_STYLE.equals(style)) return Mode.SAVE_TO;
+		return multiple ? Mode.OPEN_MULTIPLE : Mode.OPEN;
+	}
+
+	// -- Helper methods --
+
+	private <T> CompletableFuture<T> open(final String title, final File file,
+		final FileFilter filter, final Mode mode, final long timeout,
+		final TimeUnit unit, final Function<Sequence<File>, T> selection)
+	{
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final CompletableFuture<File> prepared = cache == null || file == null
+			? CompletableFuture.completedFuture(null) : cache.prefetch(file);
+		prepared.whenComplete((dir, error) -> ApplicationContext.queueCallback(
+			() -> {
+				if (result.isDone()) return; // canceled before the sheet was shown
+
+				final Sheet sheet = cache == null ? createSheet(file, filter, mode)
+					: createSheet(file, dir, filter, mode);
+				if (title != null) sheet.setTitle(title);
+
+				// close the sheet if the caller gives up on it
+				result.whenComplete((value, exc) -> {
+					if (exc != null) ApplicationContext.queueCallback(() -> {
+						if (sheet.isOpen()) sheet.close(false);
+					});
+				});
+
+				sheet.open(owner, s -> {
+					result.complete(s.getResult() ? selection.apply(selected(sheet))
+						: null);
+				});
+			}));
+		if (timeout > 0) {
+			ApplicationContext.scheduleCallback(() -> result.completeExceptionally(
+				new TimeoutException("No file chosen after " + timeout + " " + unit)),
+				unit.toMillis(timeout));
+		}
+		return result;
+	}
+
+	/** Creates a sheet showing listings from the cache. */
+	private Sheet createSheet(final File file, final File dir,
+		final FileFilter filter, final Mode mode)
+	{
+		final PivotFileBrowserSheet sheet = new PivotFileBrowserSheet(mode, cache);
+		if (filter != null) sheet.setDisabledFileFilter(f -> !filter.accept(f));
+		if (dir == null) {
+			if (mode == Mode.SAVE_AS) sheet.setSelectedFile(new File("New File"));
+			return sheet;
+		}
+		sheet.setRootDirectory(dir);
+		final File absFile = file.getAbsoluteFile();
+		if (!absFile.equals(dir)) sheet.setSelectedFile(absFile);
+		return sheet;
+	}
+
+	/** Creates a Pivot sheet, which lists directories on its own. */
+	private Sheet createSheet(final File file, final FileFilter filter,
+		final Mode mode)
+	{
+		final FileBrowserSheet sheet = new FileBrowserSheet(mode);
+		if (filter != null) {
+			sheet.setDisabledFileFilter(f -> !f.isDirectory() && !filter.accept(f));
+		}
+		if (file == null) {
+			if (mode == Mode.SAVE_AS) {
+				sheet.setSelectedFile(new File(sheet.getRootDirectory(), "New File"));
+			}
+			return sheet;
+		}
+		final File absFile = file.getAbsoluteFile();
+		if (absFile.isDirectory()) {
+			sheet.setRootDirectory(absFile);
+			return sheet;
+		}
+		final File dir = absFile.getParentFile();
+		if (dir == null || !dir.isDirectory()) return sheet;
+		sheet.setRootDirectory(dir);
+		if (mode == Mode.SAVE_AS || absFile.exists()) sheet.setSelectedFile(absFile);
+		return sheet;
+	}
+
+	private static Sequence<File> selected(final Sheet sheet) {
+		return sheet instanceof PivotFileBrowserSheet ? //
+			((PivotFileBrowserSheet) sheet).getSelectedFiles() : //
+			((FileBrowserSheet) sheet).getSelectedFiles();
+	}
+
+}
@@ -30,53 +30,204 @@
 
 package org.scijava.ui.pivot;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.pivot.wtk.ApplicationContext;
 import org.apache.pivot.wtk.BoxPane;
 import org.apache.pivot.wtk.Label;
 import org.apache.pivot.wtk.Meter;
+import org.apache.pivot.wtk.Orientation;
+import org.apache.pivot.wtk.PushButton;
 import org.scijava.Context;
 import org.scijava.app.event.StatusEvent;
 import org.scijava.event.EventHandler;
+import org.scijava.module.Module;
+import org.scijava.module.event.ModuleCanceledEvent;
+import org.scijava.module.event.ModuleFinishedEvent;
+import org.scijava.module.event.ModuleStartedEvent;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 import org.scijava.ui.StatusBar;
 import org.scijava.ui.UIService;
 
 /**
  * Status bar with text area and progress bar, similar to ImageJ 1.x.
+ * <p>
+ * {@link StatusEvent}s may be published at a high rate from any thread, so
+ * they are not applied one by one. Each event replaces the pending update, and
+ * the latest pending update is applied on the event dispatch thread at most
+ * once per {@link #FRAME_INTERVAL}. Publishing never blocks, and the last
+ * event published is always applied.
+ * </p>
+ * <p>
+ * Progress is tracked per task, so that concurrently running modules do not
+ * overwrite each other's progress. Tasks are keyed on the module of each
+ * {@link ModuleStartedEvent}, and end with its {@link ModuleFinishedEvent} or
+ * {@link ModuleCanceledEvent}. Modules are held weakly, so that the task of a
+ * module which fails, and so never finishes, ends once the module is
+ * discarded. A {@link StatusEvent} carries no module; it belongs to the module
+ * being run by the thread which published it, if any. The progress bar shows
+ * the aggregate progress of all tasks, and the task list shows the progress,
+ * rate and estimated time remaining of each one.
+ * </p>
+ * <p>
+ * Tasks, and the modules being run by each thread, are kept in concurrent
+ * maps, and progress is {@link TaskProgress#post posted} to its task, so that
+ * publishing takes no locks. Posted progress is applied with the next update.
+ * </p>
+ * <p>
+ * Optionally, the status bar also shows a {@link #setHUDVisible HUD} of
+ * resource usage, so that memory pressure and sluggishness of the user
+ * interface are visible without attaching a profiler.
+ * </p>
  * 
  * @author Curtis Rueden
  */
 public final class PivotStatusBar extends BoxPane implements StatusBar {
 
+	/** Minimum interval between applied updates, in milliseconds. */
+	public static final int FRAME_INTERVAL = 16;
+
+	/** Key of the task for progress not published by a module. */
+	private static final Object OTHER = new Object();
+
 	@Parameter
 	private UIService uiService;
 
+	@Parameter
+	private ThreadService threadService;
+
 	private final Label label;
 	private final Meter meter;
+	private final Label summary;
+	private final PushButton tasksButton;
+	private final BoxPane taskList;
+	private final Label hud;
+
+	/** Shared monitor of resource usage, or null if none. */
+	private final RuntimeMonitor sharedMonitor;
+
+	/** Samples resource usage for the HUD, or null if it is hidden. */
+	private RuntimeMonitor monitor;
+
+	private final Consumer<RuntimeMonitor.Sample> hudListener =
+		this::showSample;
+
+	/** Progress of each task, keyed by module run, or {@link #OTHER}. */
+	private final ConcurrentMap<Object, TaskProgress> tasks =
+		new ConcurrentHashMap<>();
+
+	/** Modules being run by each thread, keyed on thread ID. */
+	private final ConcurrentMap<Long, ThreadModules> threads =
+		new ConcurrentHashMap<>();
+
+	/** Rows of the task list. Accessed on the event dispatch thread only. */
+	private final Map<TaskProgress, TaskRow> rows = new HashMap<>();
+
+	/** Latest update not yet applied, or null if none. */
+	private final AtomicReference<Update> pending = new AtomicReference<>();
+
+	/** Whether a flush of the pending update has been scheduled. */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
 
 	public PivotStatusBar(final Context context) {
+		this(context, null);
+	}
+
+	/**
+	 * Creates a status bar whose HUD shows samples of the given monitor, or of
+	 * its own monitor while shown if none is given.
+	 */
+	public PivotStatusBar(final Context context, final RuntimeMonitor monitor) {
+		super(Orientation.VERTICAL);
 		context.inject(this);
+		sharedMonitor = monitor;
 
+		taskList = new BoxPane(Orientation.VERTICAL);
+		taskList.setVisible(false);
+
+		final BoxPane top = new BoxPane();
 		label = new Label();
-		add(label);
+		top.add(label);
 		meter = new Meter();
-		add(meter);
+		top.add(meter);
+		summary = new Label();
+		top.add(summary);
+		tasksButton = new PushButton("Tasks");
+		tasksButton.setToggleButton(true);
+		tasksButton.setVisible(false);
+		tasksButton.getButtonPressListeners().add(button -> {
+			taskList.setVisible(button.isSelected());
+			flush();
+		});
+		top.add(tasksButton);
+		hud = new Label();
+		hud.setVisible(false);
+		top.add(hud);
+		add(top);
+		add(taskList);
+	}
+
+	// -- PivotStatusBar methods --
+
+	/** Gets the progress of the tasks currently tracked. */
+	public List<TaskProgress> getTasks() {
+		return new ArrayList<>(tasks.values());
+	}
+
+	/** Gets whether the resource usage HUD is shown. */
+	public boolean isHUDVisible() {
+		return monitor != null;
+	}
+
+	/**
+	 * Shows or hides a compact HUD of heap usage, recent garbage collection
+	 * time, event dispatch thread latency and number of running modules.
+	 * Resource usage is sampled by the shared monitor, if any, or else by a
+	 * monitor of its own every {@link RuntimeMonitor#DEFAULT_PERIOD}
+	 * milliseconds while shown. Call on the event dispatch thread.
+	 */
+	public void setHUDVisible(final boolean visible) {
+		if (visible == isHUDVisible()) return;
+		if (visible) {
+			monitor = sharedMonitor == null ? new RuntimeMonitor(threadService)
+				: sharedMonitor;
+			monitor.addListener(hudListener);
+		}
+		else {
+			monitor.removeListener(hudListener);
+			if (monitor != sharedMonitor) monitor.dispose();
+			monitor = null;
+		}
+		hud.setVisible(visible);
 	}
 
 	// -- StatusBar methods --
 
+	/** Sets the status message. Call on the event dispatch thread. */
 	@Override
 	public void setStatus(final String message) {
-		label.setText(message == null ? "" : message);
+		final String text = message == null ? "" : message;
+		if (!text.equals(label.getText())) label.setText(text);
 	}
 
+	/** Sets the progress. Call on the event dispatch thread. */
 	@Override
 	public void setProgress(final int val, final int max) {
-		if (val >= 0 && val < max) {
-			meter.setPercentage((double) val / max);
-		}
-		else {
-			meter.setPercentage(0);
-		}
+		setPercentage(meter, val >= 0 && val < max ? (double) val / max : 0);
 	}
 
 	// -- Event handlers --
@@ -86,8 +237,293 @@ public final class PivotStatusBar extends BoxPane implements StatusBar {
 		final String message = uiService.getStatusMessage(event);
 		final int val = event.getProgressValue();
 		final int max = event.getProgressMaximum();
-		setStatus(message);
-		setProgress(val, max);
+		final ThreadModules modules = modules(event.getCallingThread());
+		final Run run = modules == null ? null : modules.current();
+		if (run != null) {
+			if (val >= 0 && max > 0) {
+				run.task.post(val, max, message, System.nanoTime());
+			}
+			else run.task.post(message);
+		}
+		// NB: StatusEvents are delivered asynchronously, and may arrive late.
+		// Those from a thread which has just finished running a module are
+		// dropped.
+		else if (modules == null || !modules.finished) {
+			if (val >= 0 && val < max) {
+				TaskProgress task = tasks.get(OTHER);
+				if (task == null) {
+					task = tasks.computeIfAbsent(OTHER, k -> new TaskProgress("Other"));
+				}
+				task.post(val, max, message, System.nanoTime());
+			}
+			else tasks.remove(OTHER);
+		}
+		pending.set(new Update(message));
+		schedule();
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleStartedEvent event) {
+		final Thread thread = event.getCallingThread();
+		final Module module = event.getModule();
+		final Run run = new Run(module);
+		tasks.put(run, run.task);
+		if (thread != null) {
+			threads.compute(thread.getId(), (id, modules) -> (modules == null
+				? new ThreadModules(thread) : modules).start(run));
+		}
+		schedule();
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleFinishedEvent event) {
+		finish(event.getCallingThread(), event.getModule());
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleCanceledEvent event) {
+		finish(event.getCallingThread(), event.getModule());
+	}
+
+	// -- Helper methods --
+
+	/** Gets the modules being run by the given thread, or null if none. */
+	private ThreadModules modules(final Thread thread) {
+		return thread == null ? null : threads.get(thread.getId());
+	}
+
+	/** Stops tracking the given module's progress. */
+	private void finish(final Thread thread, final Module module) {
+		if (thread != null) {
+			threads.computeIfPresent(thread.getId(), (id, modules) -> modules
+				.finish(module));
+		}
+		tasks.keySet().removeIf(key -> key instanceof Run && ((Run) key).isOf(
+			module));
+		schedule();
+	}
+
+	/** Schedules a flush, unless one is already scheduled. */
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			ApplicationContext.scheduleCallback(this::flush, FRAME_INTERVAL);
+		}
+	}
+
+	/** Applies the pending update, if any, and the progress of all tasks. */
+	private void flush() {
+		// NB: Clear the flag first, so that an update published from here on
+		// schedules another flush rather than being left pending.
+		scheduled.set(false);
+		final Update update = pending.getAndSet(null);
+		if (update != null) setStatus(update.message);
+		purge();
+
+		long value = 0, maximum = 0;
+		double remaining = 0;
+		int count = 0;
+		for (final TaskProgress task : getTasks()) {
+			task.apply();
+			count++;
+			if (!task.isDeterminate()) continue;
+			value += Math.min(task.getValue(), task.getMaximum());
+			maximum += task.getMaximum();
+			// NB: Tasks run concurrently, so all are done when the slowest is.
+			final double eta = task.getTimeRemaining();
+			remaining = Double.isNaN(eta) ? Double.NaN : Math.max(remaining, eta);
+		}
+		setPercentage(meter, maximum > 0 && value < maximum ? (double) value /
+			maximum : 0);
+		final String text = count == 0 ? "" : count + (count == 1 ? " task"
+			: " tasks") + (Double.isNaN(remaining) ? "" : " - ETA " +
+				formatTime(remaining));
+		if (!text.equals(summary.getText())) summary.setText(text);
+		if (tasksButton.isVisible() != count > 0) tasksButton.setVisible(
+			count > 0);
+		updateTaskList();
+	}
+
+	/** Shows the given resource usage sample in the HUD. */
+	private void showSample(final RuntimeMonitor.Sample sample) {
+		if (monitor == null) return;
+		int running = 0;
+		for (final Object key : tasks.keySet()) {
+			if (key instanceof Run) running++;
+		}
+		final long mb = 1024 * 1024;
+		final String max = sample.getMaxHeap() < 0 ? "?" : "" + sample
+			.getMaxHeap() / mb;
+		hud.setText("Heap " + sample.getUsedHeap() / mb + "/" + max + " MB - GC " +
+			sample.getGCTime() + " ms - EDT " + sample.getLatency() / 1000000 +
+			" ms - " + running + " running");
+	}
+
+	/**
+	 * Drops the tasks of modules which were discarded without finishing, and
+	 * the modules of threads which have died.
+	 */
+	private void purge() {
+		tasks.keySet().removeIf(key -> key instanceof Run && ((Run) key).module
+			.get() == null);
+		threads.values().removeIf(modules -> {
+			final Thread thread = modules.thread.get();
+			return thread == null || !thread.isAlive();
+		});
+	}
+
+	/** Adds, updates and removes rows of the task list to match the tasks. */
+	private void updateTaskList() {
+		// NB: Rows are keyed on the progress rather than the module, so that
+		// they do not keep the module of a failed task from being discarded.
+		final List<TaskProgress> current = getTasks();
+		final Set<TaskProgress> live = new HashSet<>(current);
+		for (final Iterator<Map.Entry<TaskProgress, TaskRow>> iter = rows
+			.entrySet().iterator(); iter.hasNext();)
+		{
+			final Map.Entry<TaskProgress, TaskRow> entry = iter.next();
+			if (live.contains(entry.getKey())) continue;
+			taskList.remove(entry.getValue());
+			iter.remove();
+		}
+		if (!taskList.isVisible()) return;
+		for (final TaskProgress task : current) {
+			TaskRow row = rows.get(task);
+			if (row == null) {
+				row = new TaskRow(task);
+				rows.put(task, row);
+				taskList.add(row);
+			}
+			row.refresh();
+		}
+	}
+
+	private static void setPercentage(final Meter m, final double percentage) {
+		if (percentage != m.getPercentage()) m.setPercentage(percentage);
+	}
+
+	/** Formats the given number of seconds as h:mm:ss or m:ss. */
+	private static String formatTime(final double seconds) {
+		final long s = Math.round(seconds);
+		if (s >= 3600) {
+			return String.format("%d:%02d:%02d", s / 3600, s / 60 % 60, s % 60);
+		}
+		return String.format("%d:%02d", s / 60, s % 60);
+	}
+
+	// -- Helper classes --
+
+	/** Status message to show. */
+	private static class Update {
+
+		private final String message;
+
+		private Update(final String message) {
+			this.message = message;
+		}
+	}
+
+	/**
+	 * A run of a module, keying its task. The module is held weakly, since a
+	 * module which fails never finishes.
+	 */
+	private static class Run {
+
+		private final WeakReference<Module> module;
+		private final TaskProgress task;
+
+		private Run(final Module module) {
+			this.module = new WeakReference<>(module);
+			task = new TaskProgress(module.getInfo().getTitle());
+		}
+
+		/** Gets whether this is a run of the given module, or a discarded one. */
+		private boolean isOf(final Module m) {
+			final Module current = module.get();
+			return current == null || current == m;
+		}
+	}
+
+	/**
+	 * Modules being run by a thread. Instances are immutable, so that they may
+	 * be read without locking.
+	 */
+	private static class ThreadModules {
+
+		private final WeakReference<Thread> thread;
+
+		/** Runs of the modules being run, innermost first. */
+		private final List<Run> running;
+
+		/** Whether a module has finished and none is being run since. */
+		private final boolean finished;
+
+		private ThreadModules(final Thread thread) {
+			this(new WeakReference<>(thread), Collections.<Run> emptyList(), false);
+		}
+
+		private ThreadModules(final WeakReference<Thread> thread,
+			final List<Run> running, final boolean finished)
+		{
+			this.thread = thread;
+			this.running = running;
+			this.finished = finished;
+		}
+
+		private ThreadModules start(final Run run) {
+			final List<Run> list = new ArrayList<>(running.size() + 1);
+			list.add(run);
+			list.addAll(running);
+			return new ThreadModules(thread, list, false);
+		}
+
+		private ThreadModules finish(final Module module) {
+			final List<Run> list = new ArrayList<>(running);
+			list.removeIf(run -> run.isOf(module));
+			return new ThreadModules(thread, list, list.isEmpty());
+		}
+
+		/** Gets the run of the innermost module being run, or null if none. */
+		private Run current() {
+			for (final Run run : running) {
+				if (run.module.get() != null) return run;
+			}
+			return null;
+		}
+	}
+
+	/** Row of the task list, showing the progress of one task. */
+	private static class TaskRow extends BoxPane {
+
+		private final TaskProgress task;
+		private final Meter meter = new Meter();
+		private final Label details = new Label();
+
+		private TaskRow(final TaskProgress task) {
+			this.task = task;
+			add(new Label(task.getName()));
+			add(meter);
+			add(details);
+		}
+
+		private void refresh() {
+			setPercentage(meter, task.getFraction());
+			final StringBuilder sb = new StringBuilder();
+			if (task.isDeterminate()) {
+				sb.append(task.getValue()).append("/").append(task.getMaximum());
+			}
+			final double rate = task.getRate();
+			if (!Double.isNaN(rate)) {
+				sb.append(String.format(" - %.1f/s", rate));
+			}
+			final double eta = task.getTimeRemaining();
+			if (!Double.isNaN(eta)) sb.append(" - ETA ").append(formatTime(eta));
+			final String message = task.getMessage();
+			if (message != null && !message.isEmpty()) {
+				sb.append(" - ").append(message);
+			}
+			final String text = sb.toString();
+			if (!text.equals(details.getText())) details.setText(text);
+		}
 	}
 
 }
@@ -30,27 +30,252 @@
 
 package org.scijava.ui.pivot;
 
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.pivot.wtk.ApplicationContext;
 import org.apache.pivot.wtk.BoxPane;
+import org.apache.pivot.wtk.ButtonGroup;
+import org.apache.pivot.wtk.PushButton;
+import org.apache.pivot.wtk.Separator;
+import org.apache.pivot.wtk.content.ButtonData;
+import org.apache.pivot.wtk.media.Image;
 import org.scijava.Context;
+import org.scijava.InstantiableException;
+import org.scijava.event.EventHandler;
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.PluginInfo;
+import org.scijava.plugin.PluginService;
+import org.scijava.thread.ThreadService;
+import org.scijava.tool.Tool;
+import org.scijava.tool.ToolService;
+import org.scijava.tool.event.ToolActivatedEvent;
+import org.scijava.tool.event.ToolDeactivatedEvent;
+import org.scijava.tool.event.ToolEvent;
 import org.scijava.ui.ToolBar;
 
 /**
  * Pivot implementation of {@link ToolBar}.
+ * <p>
+ * The tool bar is built from the {@link Tool} plugins' metadata, without
+ * instantiating any tools. The tools are only instantiated, off the event
+ * dispatch thread, once one is first activated. Which tools are shown is decided by a {@link Model}, which may
+ * be built off the event dispatch thread, and which starts loading the
+ * button icons in the background into an {@link IconCache}. When the active
+ * tool changes, only the buttons of the tools concerned are updated.
+ * </p>
  * 
  * @author Curtis Rueden
  */
 public class PivotToolBar extends BoxPane implements ToolBar {
 
+	/** Width and height of tool icons, in pixels. */
+	private static final int ICON_SIZE = 24;
+
+	@Parameter
+	private PluginService pluginService;
+
+	@Parameter
+	private ToolService toolService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private LogService log;
+
+	/** Cache of tool icons; null to show tool labels instead. */
+	private final IconCache icons;
+
+	private final ButtonGroup buttonGroup = new ButtonGroup();
+
+	/** Button of each tool, keyed on plugin class name. */
+	private final Map<String, PushButton> buttons = new HashMap<>();
+
+	/** Guards activation of tools. */
+	private final Object activationLock = new Object();
+
 	public PivotToolBar(final Context context) {
+		this(context, (IconCache) null);
+	}
+
+	public PivotToolBar(final Context context, final IconCache icons) {
+		this(context, new Model(context, icons));
+	}
+
+	/**
+	 * Creates a tool bar showing the tools of the given model, which may have
+	 * been built on another thread. Call on the event dispatch thread.
+	 */
+	public PivotToolBar(final Context context, final Model model) {
+		this.icons = model.icons;
 		context.inject(this);
 
-		populateToolBar();
+		populateToolBar(model);
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final ToolActivatedEvent event) {
+		select(event, true);
+	}
+
+	@EventHandler
+	protected void onEvent(final ToolDeactivatedEvent event) {
+		select(event, false);
 	}
 
 	// -- Helper methods --
 
-	private void populateToolBar() {
-		// TODO
+	private void populateToolBar(final Model model) {
+		for (final List<PluginInfo<Tool>> group : model.groups) {
+			if (getLength() > 0) add(new Separator());
+			for (final PluginInfo<Tool> info : group) {
+				add(createButton(info, model.iconFutures.get(info.getClassName())));
+			}
+		}
+	}
+
+	private PushButton createButton(final PluginInfo<Tool> info,
+		final CompletableFuture<Image> icon)
+	{
+		final PushButton button = new PushButton();
+		button.setToggleButton(true);
+		button.setButtonGroup(buttonGroup);
+		final String label = info.getLabel() == null ? info.getName() : info
+			.getLabel();
+		final String description = info.getDescription();
+		button.setTooltipText(description == null || description.isEmpty()
+			? label : description);
+		button.getButtonPressListeners().add(b -> activate(info));
+		buttons.put(info.getClassName(), button);
+
+		if (icons == null) {
+			button.setButtonData(label);
+			return button;
+		}
+		button.setButtonData(new ButtonData(icons.getPlaceholder(ICON_SIZE)));
+		icon.whenComplete((image, exc) -> ApplicationContext.queueCallback(
+			() -> button.setButtonData(image == null ? new ButtonData(label)
+				: new ButtonData(image))));
+		return button;
+	}
+
+	/**
+	 * Activates the given tool, off the event dispatch thread.
+	 * <p>
+	 * NB: The tool is not instantiated by itself. When its active tool is first
+	 * set, the {@link ToolService} instantiates all of its tools, and it only
+	 * tracks its own instances. A tool instantiated here would be a second
+	 * instance, which the service's other clients would not see. So the first
+	 * activation instantiates all tools, via the service.
+	 * </p>
+	 */
+	private void activate(final PluginInfo<Tool> info) {
+		threadService.run(() -> {
+			synchronized (activationLock) {
+				final Tool tool = tool(info);
+				if (tool != null) toolService.setActiveTool(tool);
+			}
+		});
+	}
+
+	/** Gets the {@link ToolService}'s instance of the given tool. */
+	private Tool tool(final PluginInfo<Tool> info) {
+		final List<Tool> tools = toolService.getTools();
+		for (final Tool tool : tools) {
+			if (tool.getInfo().getClassName().equals(info.getClassName())) {
+				return tool;
+			}
+		}
+		if (log != null) log.warn("Unknown tool: " + info.getClassName());
+		return null;
+	}
+
+	/** Updates the selection state of the button of an event's tool. */
+	private void select(final ToolEvent event, final boolean selected) {
+		final PluginInfo<?> info = event.getTool().getInfo();
+		if (info == null) return; // e.g., the dummy tool active by default
+		final String className = info.getClassName();
+		ApplicationContext.queueCallback(() -> {
+			final PushButton button = buttons.get(className);
+			if (button != null && button.isSelected() != selected) {
+				button.setSelected(selected);
+			}
+		});
+	}
+
+	private static URL iconURL(final PluginInfo<Tool> info) {
+		try {
+			return info.getIconURL();
+		}
+		catch (final InstantiableException exc) {
+			return null;
+		}
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * The tools shown by a {@link PivotToolBar}, and the loading of their
+	 * icons. Building a model queries the plugin metadata and starts loading
+	 * the icons, but instantiates no tools and creates no components, so it
+	 * may be built on any thread.
+	 */
+	public static final class Model {
+
+		private final IconCache icons;
+
+		/** Visible tools, in groups to be shown between separators. */
+		private final List<List<PluginInfo<Tool>>> groups = new ArrayList<>();
+
+		/** Icon of each tool, keyed on plugin class name. */
+		private final Map<String, CompletableFuture<Image>> iconFutures =
+			new HashMap<>();
+
+		/**
+		 * Gathers the tools to show.
+		 * 
+		 * @param icons Cache loading the tool icons, or null to show tool labels
+		 *          instead.
+		 */
+		public Model(final Context context, final IconCache icons) {
+			this.icons = icons;
+			final PluginService pluginService = context.getService(
+				PluginService.class);
+			PluginInfo<Tool> last = null;
+			for (final PluginInfo<Tool> info : pluginService.getPluginsOfType(
+				Tool.class))
+			{
+				// NB: Tools without an icon, such as always-active tools, are not
+				// shown. Checking the plugin metadata avoids instantiating them.
+				if (!info.isVisible() || info.getIconPath() == null) continue;
+				if (last == null || Math.abs(last.getPriority() - info
+					.getPriority()) >= 10)
+				{
+					groups.add(new ArrayList<>());
+				}
+				groups.get(groups.size() - 1).add(info);
+				if (icons != null) {
+					iconFutures.put(info.getClassName(), icons.load(() -> iconURL(info),
+						ICON_SIZE));
+				}
+				last = info;
+			}
+		}
+
+		/** Gets the visible tools, in groups to be shown between separators. */
+		public List<List<PluginInfo<Tool>>> getGroups() {
+			return Collections.unmodifiableList(groups);
+		}
+
 	}
 
 }
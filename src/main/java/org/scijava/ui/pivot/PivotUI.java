@@ -31,28 +31,25 @@
 package org.scijava.ui.pivot;
 
 import java.io.File;
-import java.lang.reflect.Field;
+import java.io.FileFilter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import org.apache.pivot.collections.Sequence;
-import org.apache.pivot.wtk.Alert;
 import org.apache.pivot.wtk.DesktopApplicationContext;
-import org.apache.pivot.wtk.FileBrowserSheet;
-import org.apache.pivot.wtk.Sheet;
-import org.apache.pivot.wtk.SheetCloseListener;
 import org.scijava.display.Display;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.thread.ThreadService;
 import org.scijava.ui.AbstractUserInterface;
-import org.scijava.ui.DialogPrompt;
 import org.scijava.ui.DialogPrompt.MessageType;
 import org.scijava.ui.DialogPrompt.OptionType;
 import org.scijava.ui.SystemClipboard;
 import org.scijava.ui.UserInterface;
-import org.scijava.ui.viewer.DisplayWindow;
-import org.scijava.widget.FileWidget;
+import org.scijava.ui.pivot.viewer.PivotDisplayWindow;
+import org.scijava.ui.pivot.widget.InputPanelCache;
 
 /**
  * Apache Pivot-based user interface for ImageJ.
@@ -71,23 +68,96 @@ public class PivotUI extends AbstractUserInterface implements Runnable {
 	private LogService log;
 
 	/** The Pivot application context. */
-	private PivotApplication app;
+	private volatile PivotApplication app;
+
+	/** Future which completes once the application frame has been opened. */
+	private volatile CompletableFuture<PivotApplication> ready;
+
+	/** Directory listings shared by all file choosers. */
+	private DirectoryListingCache directoryCache;
+
+	/** Input panels reused across runs of the same module. */
+	private final InputPanelCache inputPanelCache = new InputPanelCache();
+
+	/** Folds bursts of informational alerts into summaries. */
+	private final PivotAlertAggregator alertAggregator =
+		new PivotAlertAggregator();
+
+	// -- PivotUI methods --
+
+	/**
+	 * Gets a future which completes once the Pivot application has started up
+	 * and its frame has been opened, or {@code null} if the UI has not yet been
+	 * shown. Until then, {@link #getApplicationFrame()} and the other getters
+	 * of the UI's components wait for it when called off the event dispatch
+	 * thread.
+	 */
+	public CompletableFuture<PivotApplication> whenReady() {
+		return ready;
+	}
+
+	/** Gets the directory listing cache shared by all file choosers. */
+	public synchronized DirectoryListingCache getDirectoryCache() {
+		if (directoryCache == null) {
+			directoryCache = new DirectoryListingCache(threadService
+				.getExecutorService(), threadService, log);
+		}
+		return directoryCache;
+	}
+
+	/** Gets the cache of input panels shared by all input harvesters. */
+	public InputPanelCache getInputPanelCache() {
+		return inputPanelCache;
+	}
+
+	/** Gets the aggregator which folds bursts of alerts into summaries. */
+	public PivotAlertAggregator getAlertAggregator() {
+		return alertAggregator;
+	}
+
+	/** Gets a file chooser whose sheets are owned by the application frame. */
+	public PivotFileChooser getFileChooser() {
+		return new PivotFileChooser(getApplicationFrame(), getDirectoryCache());
+	}
+
+	/**
+	 * Asynchronous version of {@link #chooseFile(String, File, String)}.
+	 * Cancelling the returned future closes the file chooser.
+	 */
+	public CompletableFuture<File> chooseFileAsync(final String title,
+		final File file, final String style)
+	{
+		return getFileChooser().chooseFile(title, file, style);
+	}
+
+	/**
+	 * Asynchronous version of {@link #chooseFiles(File, List, FileFilter,
+	 * String)}. Cancelling the returned future closes the file chooser.
+	 */
+	public CompletableFuture<List<File>> chooseFilesAsync(final File parent,
+		final FileFilter filter, final String style)
+	{
+		return getFileChooser().chooseFiles(null, parent, filter, style);
+	}
 
 	// -- UserInterface methods --
 
 	@Override
 	public PivotApplicationFrame getApplicationFrame() {
-		return app == null ? null : app.getApplicationFrame();
+		final PivotApplication application = app();
+		return application == null ? null : application.getApplicationFrame();
 	}
 
 	@Override
 	public PivotToolBar getToolBar() {
-		return app == null ? null : app.getToolBar();
+		final PivotApplication application = app();
+		return application == null ? null : application.getToolBar();
 	}
 
 	@Override
 	public PivotStatusBar getStatusBar() {
-		return app == null ? null : app.getStatusBar();
+		final PivotApplication application = app();
+		return application == null ? null : application.getStatusBar();
 	}
 
 	@Override
@@ -96,67 +166,32 @@ public class PivotUI extends AbstractUserInterface implements Runnable {
 	}
 
 	@Override
-	public DisplayWindow createDisplayWindow(final Display<?> display) {
-		throw new UnsupportedOperationException("Not supported yet.");
+	public PivotDisplayWindow createDisplayWindow(final Display<?> display) {
+		final PivotApplication application = app();
+		return application == null ? null : new PivotDisplayWindow(application
+			.getDisplay());
 	}
 
 	@Override
-	public DialogPrompt dialogPrompt(final String message, final String title,
-		final MessageType msg, final OptionType option)
+	public PivotDialogPrompt dialogPrompt(final String message,
+		final String title, final MessageType msg, final OptionType option)
 	{
-		final org.apache.pivot.wtk.MessageType messageType;
-		switch (msg) {
-			case ERROR_MESSAGE:
-				messageType = org.apache.pivot.wtk.MessageType.ERROR;
-				break;
-			case QUESTION_MESSAGE:
-				messageType = org.apache.pivot.wtk.MessageType.QUESTION;
-				break;
-			case WARNING_MESSAGE:
-				messageType = org.apache.pivot.wtk.MessageType.WARNING;
-				break;
-			default:
-				messageType = org.apache.pivot.wtk.MessageType.INFO;
-				break;
-		}
-
-		Alert.alert(messageType, message, title, null, getApplicationFrame(), null);
-		return null;//FIXME
+		return alertAggregator.dialogPrompt(message, title, msg, option,
+			getApplicationFrame());
 	}
 
 	@Override
-	public File chooseFile(String title, File file, String style) {
-		final FileBrowserSheet.Mode mode = style.equals(FileWidget.SAVE_STYLE)
-			? FileBrowserSheet.Mode.OPEN : style.equals(FileWidget.DIRECTORY_STYLE)
-				? FileBrowserSheet.Mode.SAVE_TO : FileBrowserSheet.Mode.OPEN;
-
-		final FileBrowserSheet fileBrowserSheet = new FileBrowserSheet();
-		fileBrowserSheet.setTitle(title);
-
-		if (mode == FileBrowserSheet.Mode.SAVE_AS) {
-			fileBrowserSheet.setSelectedFile(new File(fileBrowserSheet
-				.getRootDirectory(), "New File"));
-		}
-
-		fileBrowserSheet.setMode(mode);
-		class FileSheetCloseListener implements SheetCloseListener {
-
-			private Sequence<File> files;
+	public File chooseFile(final String title, final File file,
+		final String style)
+	{
+		return await(chooseFileAsync(title, file, style));
+	}
 
-			@Override
-			public void sheetClosed(final Sheet sheet) {
-				files = sheet.getResult() ? fileBrowserSheet.getSelectedFiles() : null;
-				synchronized (this) {
-					notify();
-				}
-			}
-		}
-		final FileSheetCloseListener l = new FileSheetCloseListener();
-		synchronized (l) {
-			fileBrowserSheet.open(getApplicationFrame(), l);
-			try { l.wait(); } catch (InterruptedException e) {}
-		}
-		return l.files == null ? null : l.files.get(0);
+	@Override
+	public List<File> chooseFiles(final File parent, final List<File> files,
+		final FileFilter filter, final String style)
+	{
+		return await(chooseFilesAsync(parent, filter, style));
 	}
 
 	@Override
@@ -176,56 +211,98 @@ public class PivotUI extends AbstractUserInterface implements Runnable {
 	@Override
 	public void dispose() {
 		// TODO: Dispose of the Pivot application context and UI elements.
+		synchronized (this) {
+			if (directoryCache != null) directoryCache.dispose();
+			directoryCache = null;
+		}
+		inputPanelCache.clear();
 	}
 
 	// -- Runnable methods --
 
 	@Override
 	public void run() {
-		DesktopApplicationContext.main(PivotApplication.class, new String[0]);
+		try {
+			DesktopApplicationContext.main(PivotApplication.class, new String[0]);
+		}
+		catch (final RuntimeException exc) {
+			PivotApplication.awaitStartup().completeExceptionally(exc);
+		}
 	}
 
 	// -- Internal methods --
 
 	@Override
 	protected void createUI() {
-		try {
-			// call run() method in a separate thread, blocking until finished
-			threadService.run(this).get();
-		}
-		catch (final ExecutionException exc) {
+		final CompletableFuture<PivotApplication> startup =
+			PivotApplication.awaitStartup();
+
+		ready = startup.thenCompose(application -> {
+			application.setContext(getContext());
+			return application.initialize();
+		}).thenApply(application -> {
+			app = application;
+			return application;
+		});
+		ready.exceptionally(exc -> {
 			if (log != null) log.error(exc);
-		}
-		catch (final InterruptedException exc) {
-			if (log != null) log.error(exc);
-		}
-		app = getApplicationContext();
-		app.setContext(getContext());
-		app.initialize();
+			return null;
+		});
+
+		// call run() method in a separate thread, without waiting for it
+		threadService.run(this);
 	}
 
 	// -- Helper methods --
 
 	/**
-	 * HACK: There does not seem to be a way (at least, not obvious to me) to
-	 * obtain the Application instance from the DesktopApplicationContext. The
-	 * static application field stores it, but it is private. Hence, we force our
-	 * way past accessibility restrictions to grab it anyway...
+	 * Gets the Pivot application, waiting for its frame to be opened if the UI
+	 * is still starting up. Returns null if the UI has not been shown or failed
+	 * to start, or if still starting up when called on the event dispatch
+	 * thread, where waiting would deadlock.
 	 */
-	private PivotApplication getApplicationContext() {
+	private PivotApplication app() {
+		final PivotApplication application = app;
+		if (application != null) return application;
+		final CompletableFuture<PivotApplication> future = ready;
+		if (future == null) return null;
+		if (threadService.isDispatchThread()) {
+			if (log != null) log.debug("Pivot UI is not ready yet");
+			return null;
+		}
 		try {
-			final Field field =
-				DesktopApplicationContext.class.getDeclaredField("application");
-			field.setAccessible(true);
-			return (PivotApplication) field.get(null);
+			return future.get();
 		}
-		catch (final NoSuchFieldException exc) {
-			if (log != null) log.error(exc);
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
 		}
-		catch (final IllegalArgumentException exc) {
-			if (log != null) log.error(exc);
+		catch (final ExecutionException exc) {
+			// NB: The failure has already been logged.
 		}
-		catch (final IllegalAccessException exc) {
+		return null;
+	}
+
+	/**
+	 * Blocks until the given future completes, returning null if it fails or
+	 * the calling thread is interrupted. Since the Pivot UI can only make
+	 * progress on the event dispatch thread, waiting there would deadlock; in
+	 * that case the request is canceled instead.
+	 */
+	private <T> T await(final Future<T> future) {
+		if (threadService.isDispatchThread()) {
+			future.cancel(false);
+			if (log != null) log.warn("Cannot block the event dispatch thread " +
+				"waiting for user input; use the asynchronous API instead.");
+			return null;
+		}
+		try {
+			return future.get();
+		}
+		catch (final InterruptedException exc) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+		}
+		catch (final ExecutionException exc) {
 			if (log != null) log.error(exc);
 		}
 		return null;
@@ -0,0 +1,242 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import org.apache.pivot.wtk.ApplicationContext;
+import org.scijava.Disposable;
+
+/**
+ * Samples heap usage, garbage collection pauses and event dispatch thread
+ * latency on a timer.
+ * <p>
+ * Each sample is taken on a background thread, then handed to the listeners
+ * on the event dispatch thread by a callback whose queueing delay is itself
+ * the latency measurement. At most one such callback is outstanding at a
+ * time, so a stalled event dispatch thread is not flooded with more. While it
+ * is outstanding, stall listeners are told how long it has been waiting.
+ * </p>
+ * <p>
+ * One monitor can serve any number of listeners, so that a single probe
+ * measures the latency for all of them.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class RuntimeMonitor implements Disposable {
+
+	/** Default interval between samples, in milliseconds. */
+	public static final int DEFAULT_PERIOD = 250;
+
+	/** Span over which garbage collection time is totaled, in milliseconds. */
+	private static final int GC_WINDOW = 1000;
+
+	private final ScheduledExecutorService executor;
+
+	private final List<Consumer<Sample>> listeners =
+		new CopyOnWriteArrayList<>();
+	private final List<LongConsumer> stallListeners =
+		new CopyOnWriteArrayList<>();
+
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final List<GarbageCollectorMXBean> collectors = ManagementFactory
+		.getGarbageCollectorMXBeans();
+
+	/** Garbage collection time of recent samples, in milliseconds. */
+	private final long[] gcTimes;
+	private int gcIndex;
+	private long lastGCTime = -1;
+
+	/** Time at which the outstanding probe was queued, or 0 if none. */
+	private volatile long probeTime;
+
+	/**
+	 * Creates a monitor which samples every {@link #DEFAULT_PERIOD}
+	 * milliseconds.
+	 * 
+	 * @param threadFactory Factory for the sampling thread.
+	 */
+	public RuntimeMonitor(final ThreadFactory threadFactory) {
+		this(threadFactory, DEFAULT_PERIOD);
+	}
+
+	public RuntimeMonitor(final ThreadFactory threadFactory, final int period) {
+		gcTimes = new long[Math.max(1, GC_WINDOW / period)];
+		executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		executor.scheduleAtFixedRate(this::sample, 0, period,
+			TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a monitor which samples every {@link #DEFAULT_PERIOD}
+	 * milliseconds.
+	 * 
+	 * @param threadFactory Factory for the sampling thread.
+	 * @param listener Receives each sample, on the event dispatch thread.
+	 */
+	public RuntimeMonitor(final ThreadFactory threadFactory,
+		final Consumer<Sample> listener)
+	{
+		this(threadFactory, listener, DEFAULT_PERIOD);
+	}
+
+	public RuntimeMonitor(final ThreadFactory threadFactory,
+		final Consumer<Sample> listener, final int period)
+	{
+		this(threadFactory, period);
+		addListener(listener);
+	}
+
+	// -- RuntimeMonitor methods --
+
+	/** Adds a listener to receive each sample, on the event dispatch thread. */
+	public void addListener(final Consumer<Sample> listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(final Consumer<Sample> listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Adds a listener to be told, on the sampling thread, how long the
+	 * outstanding probe has been waiting for the event dispatch thread, in
+	 * nanoseconds. It is called once per period while the probe waits.
+	 */
+	public void addStallListener(final LongConsumer listener) {
+		stallListeners.add(listener);
+	}
+
+	public void removeStallListener(final LongConsumer listener) {
+		stallListeners.remove(listener);
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		executor.shutdownNow();
+	}
+
+	// -- Helper methods --
+
+	/** Takes a sample, and queues it for the listener. */
+	private void sample() {
+		final MemoryUsage heap = memory.getHeapMemoryUsage();
+
+		long gcTime = 0;
+		for (final GarbageCollectorMXBean collector : collectors) {
+			gcTime += Math.max(0, collector.getCollectionTime());
+		}
+		gcTimes[gcIndex] = lastGCTime < 0 ? 0 : gcTime - lastGCTime;
+		gcIndex = (gcIndex + 1) % gcTimes.length;
+		lastGCTime = gcTime;
+		long recentGCTime = 0;
+		for (final long t : gcTimes) {
+			recentGCTime += t;
+		}
+
+		// NB: If the last probe has not run yet, the event dispatch thread is
+		// stalled; its latency is reported once the probe finally runs.
+		final long outstanding = probeTime;
+		if (outstanding != 0) {
+			final long waiting = System.nanoTime() - outstanding;
+			for (final LongConsumer listener : stallListeners) {
+				listener.accept(waiting);
+			}
+			return;
+		}
+		final long queued = System.nanoTime();
+		final long gc = recentGCTime;
+		probeTime = queued;
+		ApplicationContext.queueCallback(() -> {
+			probeTime = 0;
+			final Sample sample = new Sample(heap.getUsed(), heap.getMax(), gc,
+				System.nanoTime() - queued);
+			for (final Consumer<Sample> listener : listeners) {
+				listener.accept(sample);
+			}
+		});
+	}
+
+	// -- Helper classes --
+
+	/** Resource usage at one point in time. */
+	public static class Sample {
+
+		private final long usedHeap;
+		private final long maxHeap;
+		private final long gcTime;
+		private final long latency;
+
+		private Sample(final long usedHeap, final long maxHeap,
+			final long gcTime, final long latency)
+		{
+			this.usedHeap = usedHeap;
+			this.maxHeap = maxHeap;
+			this.gcTime = gcTime;
+			this.latency = latency;
+		}
+
+		/** Gets the heap memory in use, in bytes. */
+		public long getUsedHeap() {
+			return usedHeap;
+		}
+
+		/** Gets the maximum heap memory, in bytes, or -1 if undefined. */
+		public long getMaxHeap() {
+			return maxHeap;
+		}
+
+		/** Gets the time spent collecting garbage recently, in milliseconds. */
+		public long getGCTime() {
+			return gcTime;
+		}
+
+		/** Gets the event dispatch thread latency, in nanoseconds. */
+		public long getLatency() {
+			return latency;
+		}
+	}
+
+}
@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Progress of a single task shown in the {@link PivotStatusBar}.
+ * <p>
+ * Besides the latest progress value and maximum, a task tracks its rate of
+ * progress in items per second, smoothed with an exponentially weighted
+ * moving average, from which it estimates the time remaining.
+ * </p>
+ * <p>
+ * Progress may be {@link #post posted} from any thread without blocking, and
+ * is recorded once {@link #apply applied}, e.g. on the event dispatch thread.
+ * Progress posted in between is coalesced, keeping the latest progress and
+ * the latest message.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class TaskProgress {
+
+	/** Time constant of the rate smoothing, in seconds. */
+	private static final double TIME_CONSTANT = 2;
+
+	private final String name;
+
+	private int value;
+	private int maximum;
+	private String message;
+
+	/** Smoothed rate of progress, in items per second; NaN if unknown. */
+	private double rate = Double.NaN;
+
+	/** Time of the last progress change, in nanoseconds. */
+	private long lastTime;
+
+	/** Value at the last progress change. */
+	private int lastValue;
+
+	/** Progress posted but not yet applied, or null if none. */
+	private final AtomicReference<Sample> posted = new AtomicReference<>();
+
+	public TaskProgress(final String name) {
+		this.name = name;
+	}
+
+	// -- TaskProgress methods --
+
+	/**
+	 * Posts the task's latest progress, to be recorded by the next call to
+	 * {@link #apply}. Never blocks.
+	 * 
+	 * @param val The progress value.
+	 * @param max The progress maximum.
+	 * @param msg The status message, or null to keep the current one.
+	 * @param nanoTime The current {@link System#nanoTime()}.
+	 */
+	public void post(final int val, final int max, final String msg,
+		final long nanoTime)
+	{
+		posted.accumulateAndGet(new Sample(true, val, max, msg, nanoTime),
+			Sample::merge);
+	}
+
+	/**
+	 * Posts the task's latest status message, to be recorded by the next call
+	 * to {@link #apply}. Never blocks.
+	 */
+	public void post(final String msg) {
+		posted.accumulateAndGet(new Sample(false, 0, 0, msg == null ? "" : msg,
+			0), Sample::merge);
+	}
+
+	/**
+	 * Records the progress posted since the last call, if any.
+	 * 
+	 * @return Whether any progress had been posted.
+	 */
+	public synchronized boolean apply() {
+		final Sample sample = posted.getAndSet(null);
+		if (sample == null) return false;
+		if (sample.progress) {
+			update(sample.value, sample.maximum, sample.message, sample.nanoTime);
+		}
+		else if (sample.message != null) message = sample.message;
+		return true;
+	}
+
+	/**
+	 * Records the task's latest progress.
+	 * 
+	 * @param val The progress value.
+	 * @param max The progress maximum.
+	 * @param msg The status message, or null to keep the current one.
+	 * @param nanoTime The current {@link System#nanoTime()}.
+	 */
+	public synchronized void update(final int val, final int max,
+		final String msg, final long nanoTime)
+	{
+		if (msg != null) message = msg;
+		if (max != maximum || val < lastValue) {
+			// a new phase has begun; start measuring afresh
+			rate = Double.NaN;
+			lastTime = nanoTime;
+			lastValue = val;
+		}
+		else if (val > lastValue) {
+			final double seconds = (nanoTime - lastTime) / 1e9;
+			if (seconds > 0) {
+				final double current = (val - lastValue) / seconds;
+				final double weight = 1 - Math.exp(-seconds / TIME_CONSTANT);
+				rate = Double.isNaN(rate) ? current : rate + weight * (current - rate);
+			}
+			lastTime = nanoTime;
+			lastValue = val;
+		}
+		value = val;
+		maximum = max;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized String getMessage() {
+		return message;
+	}
+
+	public synchronized void setMessage(final String message) {
+		this.message = message;
+	}
+
+	public synchronized int getValue() {
+		return value;
+	}
+
+	public synchronized int getMaximum() {
+		return maximum;
+	}
+
+	/** Gets whether the task reports meaningful progress. */
+	public synchronized boolean isDeterminate() {
+		return maximum > 0 && value >= 0;
+	}
+
+	/** Gets the fraction of the task completed, between 0 and 1. */
+	public synchronized double getFraction() {
+		if (!isDeterminate()) return 0;
+		return Math.min(1, (double) value / maximum);
+	}
+
+	/** Gets the smoothed rate of progress, in items per second, or NaN. */
+	public synchronized double getRate() {
+		return rate;
+	}
+
+	/** Gets the estimated time remaining, in seconds, or NaN if unknown. */
+	public synchronized double getTimeRemaining() {
+		if (!isDeterminate() || !(rate > 0)) return Double.NaN;
+		return Math.max(0, maximum - value) / rate;
+	}
+
+	// -- Helper classes --
+
+	/** Progress posted by a publisher. */
+	private static class Sample {
+
+		private final boolean progress;
+		private final int value;
+		private final int maximum;
+		private final String message;
+		private final long nanoTime;
+
+		private Sample(final boolean progress, final int value, final int maximum,
+			final String message, final long nanoTime)
+		{
+			this.progress = progress;
+			this.value = value;
+			this.maximum = maximum;
+			this.message = message;
+			this.nanoTime = nanoTime;
+		}
+
+		/** Coalesces two samples, keeping the latest progress and message. */
+		private static Sample merge(final Sample prev, final Sample next) {
+			if (prev == null) return next;
+			final Sample p = next.progress ? next : prev;
+			return new Sample(p.progress, p.value, p.maximum, next.message == null
+				? prev.message : next.message, p.nanoTime);
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a batch of module runs, row by row.
+ * 
+ * @author Curtis Rueden
+ * @see BatchRunner
+ */
+public class BatchReport {
+
+	/** Outcome of one row. */
+	public enum Status {
+		/** The module ran successfully. */
+		SUCCEEDED,
+		/** The row had invalid or unresolved inputs, so the module did not run. */
+		INVALID,
+		/** The module was canceled during preprocessing, or canceled itself. */
+		CANCELED,
+		/** The module could not be created, or threw an exception. */
+		FAILED
+	}
+
+	private final List<Row> rows = new ArrayList<>();
+	private final Map<Status, Integer> counts = new EnumMap<>(Status.class);
+
+	/** Error which aborted the batch, or null if none. */
+	private Throwable error;
+
+	// -- BatchReport methods --
+
+	/** Gets the outcome of each row read so far, in row order. */
+	public synchronized List<Row> getRows() {
+		final List<Row> sorted = new ArrayList<>(rows);
+		sorted.sort(Comparator.comparingInt(Row::getIndex));
+		return sorted;
+	}
+
+	/** Gets the number of rows with the given outcome. */
+	public synchronized int getCount(final Status status) {
+		final Integer count = counts.get(status);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Gets the error which kept the rest of the rows from being read, or null
+	 * if all rows were read.
+	 */
+	public synchronized Throwable getError() {
+		return error;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return counts + (error == null ? "" : "; aborted: " + error);
+	}
+
+	// -- Internal methods --
+
+	synchronized void add(final Row row) {
+		rows.add(row);
+		counts.put(row.getStatus(), getCount(row.getStatus()) + 1);
+	}
+
+	synchronized void abort(final Throwable t) {
+		error = t;
+	}
+
+	// -- Helper classes --
+
+	/** Outcome of one row. */
+	public static class Row {
+
+		private final int index;
+		private final Status status;
+		private final List<String> messages;
+
+		Row(final int index, final Status status, final List<String> messages) {
+			this.index = index;
+			this.status = status;
+			this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+		}
+
+		/** Gets the number of the row in its source, starting at 1. */
+		public int getIndex() {
+			return index;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		/** Gets the problems found with the row, if any. */
+		public List<String> getMessages() {
+			return messages;
+		}
+
+		@Override
+		public String toString() {
+			return "Row " + index + ": " + status + (messages.isEmpty() ? ""
+				: " " + messages);
+		}
+	}
+
+}
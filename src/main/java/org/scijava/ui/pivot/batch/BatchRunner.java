@@ -0,0 +1,365 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.batch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.AbstractContextual;
+import org.scijava.Cancelable;
+import org.scijava.Context;
+import org.scijava.app.StatusService;
+import org.scijava.convert.ConvertService;
+import org.scijava.log.LogService;
+import org.scijava.module.Module;
+import org.scijava.module.ModuleInfo;
+import org.scijava.module.ModuleItem;
+import org.scijava.module.ModuleRunner;
+import org.scijava.module.ModuleService;
+import org.scijava.module.process.AbstractPreprocessorPlugin;
+import org.scijava.module.process.ModulePostprocessor;
+import org.scijava.module.process.ModulePreprocessor;
+import org.scijava.module.process.PostprocessorPlugin;
+import org.scijava.module.process.PreprocessorPlugin;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.PluginInfo;
+import org.scijava.plugin.PluginService;
+import org.scijava.thread.ThreadService;
+import org.scijava.ui.pivot.batch.BatchReport.Status;
+import org.scijava.widget.InputHarvester;
+
+/**
+ * Runs a module once per row of a {@link ParameterSource}, without user
+ * interaction.
+ * <p>
+ * Each row's values are converted to the types of the module's inputs, and
+ * checked against their choices and bounds, before the module is run. Input
+ * harvesters are left out of preprocessing, so no widgets are built and no
+ * dialogs shown; a required input which is still unresolved after the other
+ * preprocessors have run cancels the run instead. Problems are reported per
+ * row in a {@link BatchReport}, without stopping the batch.
+ * </p>
+ * <p>
+ * Rows are read and run off the event dispatch thread, by a fixed number of
+ * worker threads. Only a few rows are read ahead of the workers, so sources
+ * of any length can be streamed.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class BatchRunner extends AbstractContextual {
+
+	/** Number of rows between status updates. */
+	private static final int STATUS_INTERVAL = 100;
+
+	@Parameter
+	private ModuleService moduleService;
+
+	@Parameter
+	private PluginService pluginService;
+
+	@Parameter
+	private ConvertService convertService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private StatusService statusService;
+
+	@Parameter(required = false)
+	private LogService log;
+
+	private volatile int parallelism = 1;
+	private volatile boolean postprocess;
+
+	public BatchRunner(final Context context) {
+		setContext(context);
+	}
+
+	// -- BatchRunner methods --
+
+	/** Gets the number of rows run at once. */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/** Sets the number of rows run at once. */
+	public void setParallelism(final int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: " +
+				parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	/** Gets whether each run is postprocessed, e.g. to display its outputs. */
+	public boolean isPostprocess() {
+		return postprocess;
+	}
+
+	/**
+	 * Sets whether each run is postprocessed, e.g. to display its outputs. By
+	 * default, runs are not postprocessed, so a batch does not display the
+	 * outputs of every row.
+	 */
+	public void setPostprocess(final boolean postprocess) {
+		this.postprocess = postprocess;
+	}
+
+	/**
+	 * Runs the given module once per row of the given source, which is closed
+	 * afterwards. Canceling the returned future stops reading further rows.
+	 * 
+	 * @return A future which completes with the report once all rows read have
+	 *         been run.
+	 */
+	public CompletableFuture<BatchReport> run(final ModuleInfo info,
+		final ParameterSource source)
+	{
+		final CompletableFuture<BatchReport> result = new CompletableFuture<>();
+		threadService.run(() -> runBatch(info, source, result));
+		return result;
+	}
+
+	// -- Helper methods --
+
+	private void runBatch(final ModuleInfo info, final ParameterSource source,
+		final CompletableFuture<BatchReport> result)
+	{
+		final BatchReport report = new BatchReport();
+		final List<PluginInfo<PreprocessorPlugin>> pre = pluginService
+			.getPluginsOfType(PreprocessorPlugin.class);
+		final List<PluginInfo<PostprocessorPlugin>> post = postprocess
+			? pluginService.getPluginsOfType(PostprocessorPlugin.class)
+			: Collections.<PluginInfo<PostprocessorPlugin>> emptyList();
+
+		final int threads = parallelism;
+		final ExecutorService workers = Executors.newFixedThreadPool(threads,
+			threadService);
+		// NB: Bound the rows read ahead, so the source is streamed.
+		final Semaphore slots = new Semaphore(2 * threads);
+		int index = 0;
+		try {
+			while (!result.isCancelled()) {
+				final Map<String, Object> values;
+				try {
+					values = source.next();
+				}
+				catch (final MalformedRowException exc) {
+					report.add(new BatchReport.Row(++index, Status.INVALID,
+						Collections.singletonList(exc.getMessage())));
+					continue;
+				}
+				if (values == null) break;
+				final int row = ++index;
+				slots.acquire();
+				workers.execute(() -> {
+					try {
+						report.add(runRow(info, row, values, pre, post));
+					}
+					finally {
+						slots.release();
+					}
+				});
+				if (row % STATUS_INTERVAL == 0 && statusService != null) {
+					statusService.showStatus(info.getTitle() + ": " + row + " rows");
+				}
+			}
+		}
+		catch (final IOException exc) {
+			report.abort(exc);
+		}
+		catch (final InterruptedException exc) {
+			report.abort(exc);
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			workers.shutdown();
+			try {
+				source.close();
+				workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			}
+			catch (final IOException exc) {
+				if (log != null) log.warn(exc);
+			}
+			catch (final InterruptedException exc) {
+				workers.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (statusService != null) {
+			statusService.showStatus(info.getTitle() + ": " + index + " rows done");
+		}
+		result.complete(report);
+	}
+
+	/** Runs the module with the given row of values. */
+	private BatchReport.Row runRow(final ModuleInfo info, final int row,
+		final Map<String, Object> values,
+		final List<PluginInfo<PreprocessorPlugin>> preInfos,
+		final List<PluginInfo<PostprocessorPlugin>> postInfos)
+	{
+		final List<String> messages = new ArrayList<>();
+		try {
+			final Module module = moduleService.createModule(info);
+			if (module == null) {
+				messages.add("Cannot create module: " + info.getTitle());
+				return new BatchReport.Row(row, Status.FAILED, messages);
+			}
+			if (!assignInputs(module, values, messages)) {
+				return new BatchReport.Row(row, Status.INVALID, messages);
+			}
+
+			final UnresolvedInputCheck check = new UnresolvedInputCheck();
+			final List<ModulePreprocessor> pre = new ArrayList<>();
+			for (final PreprocessorPlugin p : pluginService.createInstances(
+				preInfos))
+			{
+				// NB: Check for unresolved inputs in place of harvesting them.
+				pre.add(p instanceof InputHarvester ? check : p);
+			}
+			final List<ModulePostprocessor> post = new ArrayList<>(pluginService
+				.createInstances(postInfos));
+			new ModuleRunner(getContext(), module, pre, post).run();
+			for (final ModulePreprocessor p : pre) {
+				if (!p.isCanceled()) continue;
+				messages.add(p.getCancelReason());
+				return new BatchReport.Row(row, p == check ? Status.INVALID
+					: Status.CANCELED, messages);
+			}
+			// NB: The module may also have canceled itself while running.
+			if (module instanceof Cancelable && ((Cancelable) module).isCanceled()) {
+				final String reason = ((Cancelable) module).getCancelReason();
+				if (reason != null) messages.add(reason);
+				return new BatchReport.Row(row, Status.CANCELED, messages);
+			}
+			return new BatchReport.Row(row, Status.SUCCEEDED, messages);
+		}
+		catch (final RuntimeException exc) {
+			messages.add(String.valueOf(exc));
+			return new BatchReport.Row(row, Status.FAILED, messages);
+		}
+	}
+
+	/**
+	 * Converts the given values to the types of the module's inputs, checks
+	 * them, and assigns them to the module.
+	 * 
+	 * @return false if any value is invalid.
+	 */
+	private boolean assignInputs(final Module module,
+		final Map<String, Object> values, final List<String> messages)
+	{
+		boolean valid = true;
+		for (final Map.Entry<String, Object> entry : values.entrySet()) {
+			final String name = entry.getKey();
+			final ModuleItem<?> item = module.getInfo().getInput(name);
+			if (item == null) {
+				messages.add("Ignoring unknown input '" + name + "'");
+				continue;
+			}
+			final Object value = entry.getValue();
+			if (value == null) continue;
+			final Object converted = convertService.convert(value, item.getType());
+			final String problem = converted == null ? "is not a " + item
+				.getType().getSimpleName() : check(item, converted);
+			if (problem != null) {
+				messages.add("Invalid value '" + value + "' for input '" + name +
+					"': " + problem);
+				valid = false;
+				continue;
+			}
+			module.setInput(name, converted);
+			module.resolveInput(name);
+		}
+		return valid;
+	}
+
+	/** Checks a value against an input's choices and bounds. */
+	private static String check(final ModuleItem<?> item, final Object value) {
+		final List<?> choices = item.getChoices();
+		if (choices != null && !choices.isEmpty() && !choices.contains(value)) {
+			return "must be one of " + choices;
+		}
+		if (compare(value, item.getMinimumValue()) < 0) {
+			return "is less than " + item.getMinimumValue();
+		}
+		if (compare(value, item.getMaximumValue()) > 0) {
+			return "is greater than " + item.getMaximumValue();
+		}
+		return null;
+	}
+
+	/** Compares a value to a bound, or returns 0 if they are not comparable. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static int compare(final Object value, final Object bound) {
+		if (!(value instanceof Comparable) || bound == null || !bound.getClass()
+			.isInstance(value)) return 0;
+		return ((Comparable) value).compareTo(bound);
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * Preprocessor standing in for the input harvester: rather than asking the
+	 * user, it cancels the run if any required input is still unresolved.
+	 */
+	private static class UnresolvedInputCheck extends
+		AbstractPreprocessorPlugin
+	{
+
+		@Override
+		public void process(final Module module) {
+			final List<String> unresolved = new ArrayList<>();
+			for (final ModuleItem<?> item : module.getInfo().inputs()) {
+				final String name = item.getName();
+				if (module.isInputResolved(name)) continue;
+				if (item.isRequired() && module.getInput(name) == null) {
+					unresolved.add(name);
+				}
+				else module.resolveInput(name);
+			}
+			if (!unresolved.isEmpty()) {
+				cancel("Unresolved inputs: " + String.join(", ", unresolved));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ParameterSource} reading delimited text, such as CSV or TSV, row by
+ * row. The first record is a header naming the input of each column.
+ * <p>
+ * Fields may be enclosed in double quotes, in which case they can contain
+ * delimiters, line breaks and doubled quotes. Empty fields are omitted from
+ * their row, leaving the corresponding inputs at their defaults.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class DelimitedParameterSource implements ParameterSource {
+
+	private final BufferedReader reader;
+	private final char delimiter;
+
+	private List<String> header;
+
+	/** Number of the last line read. */
+	private int line;
+
+	public DelimitedParameterSource(final Reader reader, final char delimiter) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader
+			: new BufferedReader(reader);
+		this.delimiter = delimiter;
+	}
+
+	/** Creates a source reading comma-separated values. */
+	public static DelimitedParameterSource csv(final Reader reader) {
+		return new DelimitedParameterSource(reader, ',');
+	}
+
+	/** Creates a source reading tab-separated values. */
+	public static DelimitedParameterSource tsv(final Reader reader) {
+		return new DelimitedParameterSource(reader, '\t');
+	}
+
+	// -- ParameterSource methods --
+
+	@Override
+	public Map<String, Object> next() throws IOException {
+		if (header == null) {
+			header = readRecord();
+			if (header == null) return null;
+		}
+		final int start = line + 1;
+		final List<String> fields = readRecord();
+		if (fields == null) return null;
+		if (fields.size() != header.size()) {
+			throw new MalformedRowException("Line " + start + ": expected " + header
+				.size() + " fields but found " + fields.size());
+		}
+		final Map<String, Object> row = new LinkedHashMap<>();
+		for (int i = 0; i < fields.size(); i++) {
+			if (!fields.get(i).isEmpty()) row.put(header.get(i), fields.get(i));
+		}
+		return row;
+	}
+
+	// -- Closeable methods --
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Reads the fields of the next non-blank record, or returns null at the end
+	 * of the input.
+	 */
+	private List<String> readRecord() throws IOException {
+		String text;
+		do {
+			text = reader.readLine();
+			if (text == null) return null;
+			line++;
+		}
+		while (text.trim().isEmpty());
+
+		final int start = line;
+		final List<String> fields = new ArrayList<>();
+		final StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		int i = 0;
+		while (true) {
+			if (i == text.length()) {
+				if (!quoted) break;
+				// NB: A quoted field continues on the next line.
+				text = reader.readLine();
+				if (text == null) {
+					throw new MalformedRowException("Line " + start +
+						": unterminated quoted field");
+				}
+				line++;
+				field.append('\n');
+				i = 0;
+				continue;
+			}
+			final char c = text.charAt(i++);
+			if (quoted) {
+				if (c != '"') field.append(c);
+				else if (i < text.length() && text.charAt(i) == '"') {
+					field.append('"');
+					i++;
+				}
+				else quoted = false;
+			}
+			else if (c == '"' && field.length() == 0) quoted = true;
+			else if (c == delimiter) {
+				fields.add(field.toString());
+				field.setLength(0);
+			}
+			else field.append(c);
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+}
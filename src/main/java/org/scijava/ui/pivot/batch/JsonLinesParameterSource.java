@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+
+/**
+ * {@link ParameterSource} reading JSON lines: one JSON object of input values
+ * per line. Blank lines are skipped.
+ * 
+ * @author Curtis Rueden
+ */
+public class JsonLinesParameterSource implements ParameterSource {
+
+	private final BufferedReader reader;
+	private int line;
+
+	public JsonLinesParameterSource(final Reader reader) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader
+			: new BufferedReader(reader);
+	}
+
+	// -- ParameterSource methods --
+
+	@Override
+	public Map<String, Object> next() throws IOException {
+		String text;
+		do {
+			text = reader.readLine();
+			if (text == null) return null;
+			line++;
+		}
+		while (text.trim().isEmpty());
+
+		final org.apache.pivot.collections.Map<String, ?> map;
+		try {
+			map = JSONSerializer.parseMap(text);
+		}
+		catch (final SerializationException | ClassCastException exc) {
+			throw new MalformedRowException("Line " + line + ": not a JSON object",
+				exc);
+		}
+		final Map<String, Object> row = new LinkedHashMap<>();
+		for (final String key : map) {
+			row.put(key, map.get(key));
+		}
+		return row;
+	}
+
+	// -- Closeable methods --
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.batch;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link ParameterSource} backed by maps of input values.
+ * 
+ * @author Curtis Rueden
+ */
+public class MapParameterSource implements ParameterSource {
+
+	private final Iterator<? extends Map<String, ?>> rows;
+
+	/** Creates a source with a single row. */
+	public MapParameterSource(final Map<String, ?> row) {
+		this(Collections.singletonList(row));
+	}
+
+	public MapParameterSource(final Iterable<? extends Map<String, ?>> rows) {
+		this.rows = rows.iterator();
+	}
+
+	/** Creates a source with a single row of the given properties. */
+	public static MapParameterSource of(final Properties properties) {
+		final Map<String, Object> row = new LinkedHashMap<>();
+		for (final String key : properties.stringPropertyNames()) {
+			row.put(key, properties.getProperty(key));
+		}
+		return new MapParameterSource(row);
+	}
+
+	// -- ParameterSource methods --
+
+	@Override
+	public Map<String, Object> next() {
+		return rows.hasNext() ? new LinkedHashMap<>(rows.next()) : null;
+	}
+
+}
@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.menu;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.pivot.wtk.Keyboard;
+import org.scijava.MenuEntry;
+import org.scijava.event.EventHandler;
+import org.scijava.input.Accelerator;
+import org.scijava.input.InputModifiers;
+import org.scijava.log.LogService;
+import org.scijava.menu.ShadowMenu;
+import org.scijava.menu.event.MenusAddedEvent;
+import org.scijava.menu.event.MenusRemovedEvent;
+import org.scijava.menu.event.MenusUpdatedEvent;
+import org.scijava.module.ModuleInfo;
+
+/**
+ * Hash table of the keyboard accelerators of a {@link ShadowMenu} tree, for
+ * looking up the command bound to a keystroke in constant time.
+ * <p>
+ * When several commands share a keystroke, the first one in menu order wins,
+ * and the conflict is logged. If the winner is later removed, the next
+ * command bound to the keystroke takes over. Once subscribed to the event
+ * service, the table keeps itself in sync with the menu tree as modules are
+ * added, removed and updated. It is safe to use from any thread.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class AcceleratorTable {
+
+	private final ShadowMenu root;
+	private final LogService log;
+
+	/** Commands bound to each keystroke; the first one is active. */
+	private final Map<Keyboard.KeyStroke, List<ShadowMenu>> bindings =
+		new HashMap<>();
+
+	/** Keystroke bound to each command. */
+	private final Map<ShadowMenu, Keyboard.KeyStroke> keyStrokes =
+		new HashMap<>();
+
+	/** Command bound for each module, keyed on module identifier. */
+	private final Map<String, ShadowMenu> identified = new HashMap<>();
+
+	/**
+	 * Builds the table for the given menu tree.
+	 * 
+	 * @param root The root of the menu tree.
+	 * @param log Service for reporting conflicts, or null.
+	 */
+	public AcceleratorTable(final ShadowMenu root, final LogService log) {
+		this.root = root;
+		this.log = log;
+		add(Collections.singleton(root));
+	}
+
+	// -- AcceleratorTable methods --
+
+	/** Gets the command bound to the given keystroke, or null if none. */
+	public synchronized ShadowMenu get(final Keyboard.KeyStroke keyStroke) {
+		final List<ShadowMenu> commands = bindings.get(keyStroke);
+		return commands == null ? null : commands.get(0);
+	}
+
+	/** Gets the keystroke bound to the given command, or null if none. */
+	public synchronized Keyboard.KeyStroke getKeyStroke(
+		final ShadowMenu shadow)
+	{
+		return keyStrokes.get(shadow);
+	}
+
+	/** Gets the number of keystrokes bound to a command. */
+	public synchronized int size() {
+		return bindings.size();
+	}
+
+	/**
+	 * Gets the keystrokes bound to more than one command, along with those
+	 * commands. The first command of each list is the one which is active.
+	 */
+	public synchronized Map<Keyboard.KeyStroke, List<ShadowMenu>>
+		getConflicts()
+	{
+		final Map<Keyboard.KeyStroke, List<ShadowMenu>> conflicts =
+			new LinkedHashMap<>();
+		for (final Map.Entry<Keyboard.KeyStroke, List<ShadowMenu>> entry : bindings
+			.entrySet())
+		{
+			if (entry.getValue().size() > 1) {
+				conflicts.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+			}
+		}
+		return conflicts;
+	}
+
+	/** Binds the accelerators of the commands at or beneath the given nodes. */
+	public synchronized void add(final Collection<ShadowMenu> added) {
+		for (final ShadowMenu shadow : added) {
+			if (!MenuTrees.isUnder(shadow, root)) continue;
+			for (final ShadowMenu leaf : MenuTrees.leaves(shadow)) {
+				bind(leaf);
+			}
+		}
+	}
+
+	/** Unbinds the accelerators of the commands at or beneath the given nodes. */
+	public synchronized void remove(final Collection<ShadowMenu> removed) {
+		for (final ShadowMenu shadow : removed) {
+			for (final ShadowMenu leaf : MenuTrees.leaves(shadow)) {
+				unbind(leaf);
+			}
+		}
+	}
+
+	/**
+	 * Rebinds the accelerators of the commands at or beneath the given nodes,
+	 * which may have changed. Since the menu tree replaces the node of an
+	 * updated module, the command previously bound for the same module is
+	 * unbound.
+	 */
+	public synchronized void update(final Collection<ShadowMenu> updated) {
+		for (final ShadowMenu shadow : updated) {
+			if (!MenuTrees.isUnder(shadow, root)) continue;
+			for (final ShadowMenu leaf : MenuTrees.leaves(shadow)) {
+				final ShadowMenu stale = identified.get(identifier(leaf));
+				if (stale != null) unbind(stale);
+				unbind(leaf);
+				bind(leaf);
+			}
+		}
+	}
+
+	/**
+	 * Brings the table in line with the menu tree, e.g. after modules were
+	 * added, removed or updated before the table was subscribed to the event
+	 * service. Only commands whose accelerators changed are rebound.
+	 */
+	public synchronized void sync() {
+		final Set<ShadowMenu> leaves = new HashSet<>(MenuTrees.leaves(root));
+		for (final ShadowMenu leaf : new ArrayList<>(keyStrokes.keySet())) {
+			if (!leaves.contains(leaf)) unbind(leaf);
+		}
+		for (final ShadowMenu leaf : leaves) {
+			final Accelerator accelerator = leaf.getMenuEntry().getAccelerator();
+			final Keyboard.KeyStroke keyStroke = accelerator == null ? null
+				: toKeyStroke(accelerator);
+			if (Objects.equals(keyStroke, keyStrokes.get(leaf))) continue;
+			unbind(leaf);
+			bind(leaf);
+		}
+	}
+
+	/** Converts a SciJava accelerator to the equivalent Pivot keystroke. */
+	public static Keyboard.KeyStroke toKeyStroke(final Accelerator accelerator) {
+		final InputModifiers modifiers = accelerator.getModifiers();
+		int mask = 0;
+		if (modifiers.isShiftDown()) mask |= Keyboard.Modifier.SHIFT.getMask();
+		if (modifiers.isCtrlDown()) mask |= Keyboard.Modifier.CTRL.getMask();
+		if (modifiers.isAltDown()) mask |= Keyboard.Modifier.ALT.getMask();
+		if (modifiers.isMetaDown()) mask |= Keyboard.Modifier.META.getMask();
+		return new Keyboard.KeyStroke(accelerator.getKeyCode().getCode(), mask);
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final MenusAddedEvent event) {
+		add(event.getItems());
+	}
+
+	@EventHandler
+	protected void onEvent(final MenusRemovedEvent event) {
+		remove(event.getItems());
+	}
+
+	@EventHandler
+	protected void onEvent(final MenusUpdatedEvent event) {
+		update(event.getItems());
+	}
+
+	// -- Helper methods --
+
+	private void bind(final ShadowMenu leaf) {
+		if (keyStrokes.containsKey(leaf)) return;
+		final MenuEntry entry = leaf.getMenuEntry();
+		final Accelerator accelerator = entry.getAccelerator();
+		if (accelerator == null) return;
+		final Keyboard.KeyStroke keyStroke = toKeyStroke(accelerator);
+
+		List<ShadowMenu> commands = bindings.get(keyStroke);
+		if (commands == null) {
+			commands = new ArrayList<>(1);
+			bindings.put(keyStroke, commands);
+		}
+		else if (log != null) {
+			log.warn("Accelerator " + accelerator + " of " + describe(leaf) +
+				" conflicts with " + describe(commands.get(0)) + "; ignoring it");
+		}
+		commands.add(leaf);
+		keyStrokes.put(leaf, keyStroke);
+		final String id = identifier(leaf);
+		if (id != null) identified.put(id, leaf);
+	}
+
+	private void unbind(final ShadowMenu leaf) {
+		final Keyboard.KeyStroke keyStroke = keyStrokes.remove(leaf);
+		if (keyStroke == null) return;
+		final List<ShadowMenu> commands = bindings.get(keyStroke);
+		commands.remove(leaf);
+		if (commands.isEmpty()) bindings.remove(keyStroke);
+		final String id = identifier(leaf);
+		if (id != null && identified.get(id) == leaf) identified.remove(id);
+	}
+
+	/** Gets the identifier of a command's module, or null if none. */
+	private static String identifier(final ShadowMenu leaf) {
+		final ModuleInfo info = leaf.getModuleInfo();
+		return info == null ? null : info.getIdentifier();
+	}
+
+	private String describe(final ShadowMenu shadow) {
+		final String path = CommandIndex.path(shadow);
+		return path.isEmpty() ? shadow.getName() : path + " > " + shadow.getName();
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.menu;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.AbstractContextual;
+import org.scijava.Context;
+import org.scijava.Disposable;
+import org.scijava.app.StatusService;
+import org.scijava.log.LogService;
+import org.scijava.menu.ShadowMenu;
+import org.scijava.module.Module;
+import org.scijava.module.ModuleInfo;
+import org.scijava.module.ModuleRunner;
+import org.scijava.module.ModuleService;
+import org.scijava.module.process.PostprocessorPlugin;
+import org.scijava.module.process.PreprocessorPlugin;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.PluginService;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Runs commands chosen from the menus off the event dispatch thread.
+ * <p>
+ * Commands are launched on a small pool of worker threads with a bounded
+ * queue, so that module lookup and creation never block the UI. The modules
+ * themselves run on the {@link ThreadService}, so that long runs (e.g., of
+ * commands waiting on an input dialog) do not tie up the pool. Each
+ * command may only have a limited number of runs in flight at once (one, by
+ * default), and a command dispatched again within a short window of its last
+ * dispatch, e.g. by a double-click, is ignored.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class CommandDispatcher extends AbstractContextual implements
+	Disposable
+{
+
+	/** Number of worker threads launching commands. */
+	private static final int THREADS = 4;
+
+	/** Maximum number of commands waiting for a worker thread. */
+	private static final int QUEUE_CAPACITY = 32;
+
+	@Parameter
+	private ModuleService moduleService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter
+	private PluginService pluginService;
+
+	@Parameter(required = false)
+	private StatusService statusService;
+
+	@Parameter(required = false)
+	private LogService log;
+
+	private final ThreadPoolExecutor executor;
+
+	/** Concurrency limits, keyed on module identifier. */
+	private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+
+	/**
+	 * Dispatch state of each command which is running or was dispatched within
+	 * the coalescing window, keyed on module identifier.
+	 */
+	private final Map<String, State> states = new HashMap<>();
+
+	private volatile int defaultLimit = 1;
+	private volatile long coalesceWindow = 400;
+
+	public CommandDispatcher(final Context context) {
+		setContext(context);
+		executor = new ThreadPoolExecutor(THREADS, THREADS, 0,
+			TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+			threadService);
+	}
+
+	// -- CommandDispatcher methods --
+
+	/**
+	 * Launches the command of the given menu leaf on a worker thread.
+	 * 
+	 * @return A future which completes when the command has finished running,
+	 *         or null if the command was not launched: because it was
+	 *         dispatched moments ago, because it is already running as many
+	 *         times as allowed, or because too many commands are waiting.
+	 */
+	public CompletableFuture<Void> dispatch(final ShadowMenu shadow) {
+		final ModuleInfo info = shadow.getModuleInfo();
+		if (info == null) return null;
+		final String key = info.getIdentifier();
+		final long now = System.currentTimeMillis();
+		synchronized (states) {
+			// NB: Forget commands which are idle and outside the window.
+			states.values().removeIf(s -> s.active == 0 &&
+				now - s.lastDispatch >= coalesceWindow);
+			State state = states.get(key);
+			if (state == null) states.put(key, state = new State());
+			if (now - state.lastDispatch < coalesceWindow) return null;
+			if (state.active >= getLimit(info)) return null;
+			state.lastDispatch = now;
+			state.active++;
+		}
+
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		try {
+			executor.execute(() -> launch(info, done));
+		}
+		catch (final RejectedExecutionException exc) {
+			release(key);
+			if (log != null) log.warn("Too many pending commands; ignoring " + info
+				.getTitle());
+			return null;
+		}
+		if (statusService != null) statusService.showStatus("Starting " + info
+			.getTitle() + "...");
+		return done;
+	}
+
+	/**
+	 * Gets whether the command of the given menu leaf is running as many times
+	 * as allowed, such that further dispatches will be ignored.
+	 */
+	public boolean isSaturated(final ShadowMenu shadow) {
+		final ModuleInfo info = shadow.getModuleInfo();
+		if (info == null) return false;
+		synchronized (states) {
+			final State state = states.get(info.getIdentifier());
+			return state != null && state.active >= getLimit(info);
+		}
+	}
+
+	/**
+	 * Sets how many runs of the given module may be in flight at once.
+	 * 
+	 * @param identifier The module's {@link ModuleInfo#getIdentifier()}.
+	 * @param limit The maximum number of concurrent runs.
+	 */
+	public void setLimit(final String identifier, final int limit) {
+		limits.put(identifier, limit);
+	}
+
+	/** Gets how many runs of the given module may be in flight at once. */
+	public int getLimit(final ModuleInfo info) {
+		final Integer limit = limits.get(info.getIdentifier());
+		return limit == null ? defaultLimit : limit;
+	}
+
+	/** Sets how many runs of each module may be in flight by default. */
+	public void setDefaultLimit(final int limit) {
+		defaultLimit = limit;
+	}
+
+	/**
+	 * Sets the window, in milliseconds, within which repeated dispatches of a
+	 * command are ignored.
+	 */
+	public void setCoalesceWindow(final long millis) {
+		coalesceWindow = millis;
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		executor.shutdownNow();
+	}
+
+	// -- Helper methods --
+
+	private void launch(final ModuleInfo info, final CompletableFuture<Void> done)
+	{
+		CompletableFuture<Void> run;
+		try {
+			run = start(info);
+		}
+		catch (final RuntimeException exc) {
+			run = new CompletableFuture<>();
+			run.completeExceptionally(exc);
+		}
+		// NB: The module counts against the limit until it has finished.
+		run.whenComplete((result, exc) -> {
+			release(info.getIdentifier());
+			if (exc == null) {
+				done.complete(null);
+				return;
+			}
+			final Throwable cause = exc instanceof CompletionException ? exc
+				.getCause() : exc;
+			if (log != null) log.error(cause);
+			done.completeExceptionally(cause);
+		});
+	}
+
+	/**
+	 * Creates a module of the given command, with preprocessing and
+	 * postprocessing, and runs it on the {@link ThreadService}.
+	 */
+	private CompletableFuture<Void> start(final ModuleInfo info) {
+		final Module module = moduleService.createModule(info);
+		if (module == null) {
+			throw new IllegalStateException("Cannot create module: " + info
+				.getTitle());
+		}
+		final ModuleRunner runner = new ModuleRunner(getContext(), module,
+			pluginService.createInstancesOfType(PreprocessorPlugin.class),
+			pluginService.createInstancesOfType(PostprocessorPlugin.class));
+		return CompletableFuture.runAsync(runner, threadService::run);
+	}
+
+	private void release(final String key) {
+		synchronized (states) {
+			final State state = states.get(key);
+			if (state == null) return;
+			state.active--;
+			if (state.active == 0 && System.currentTimeMillis() -
+				state.lastDispatch >= coalesceWindow)
+			{
+				states.remove(key);
+			}
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Dispatch state of a command. */
+	private static class State {
+
+		/** Runs queued or in progress. */
+		private int active;
+
+		/** Time of the last accepted dispatch, in milliseconds. */
+		private long lastDispatch;
+	}
+
+}
@@ -0,0 +1,578 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.menu;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.scijava.event.EventHandler;
+import org.scijava.menu.ShadowMenu;
+import org.scijava.menu.event.MenusAddedEvent;
+import org.scijava.menu.event.MenusRemovedEvent;
+import org.scijava.menu.event.MenusUpdatedEvent;
+import org.scijava.module.ModuleInfo;
+
+/**
+ * Search index over the leaves of a {@link ShadowMenu} tree.
+ * <p>
+ * Each command is indexed by its name, its {@link ModuleInfo} label and the
+ * names of the menus leading to it. Queries are answered from a prefix trie
+ * over those words, falling back to fuzzy matches from a trigram index, so
+ * that misspelled queries still find something.
+ * </p>
+ * <p>
+ * Once subscribed to the event service, the index keeps itself in sync with
+ * the menu tree as modules are added, removed and updated. It is safe to
+ * query from any thread.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class CommandIndex {
+
+	/** Minimum fraction of a query's trigrams a fuzzy match must contain. */
+	private static final double MIN_COVERAGE = 0.5;
+
+	private final ShadowMenu root;
+
+	/** Indexed commands, keyed on menu node. */
+	private final Map<ShadowMenu, Entry> entries = new HashMap<>();
+
+	/** Indexed commands, keyed on module identifier. */
+	private final Map<String, Entry> identified = new HashMap<>();
+
+	/** Root of the prefix trie over indexed words. */
+	private final TrieNode trie = new TrieNode();
+
+	/** Indexed commands, keyed on trigram. */
+	private final Map<String, Set<Entry>> trigrams = new HashMap<>();
+
+	public CommandIndex(final ShadowMenu root) {
+		this.root = root;
+		add(Collections.singleton(root));
+	}
+
+	// -- CommandIndex methods --
+
+	/** Gets the number of indexed commands. */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Finds the commands best matching the given query.
+	 * <p>
+	 * Commands with a name or label, or a word of either, starting with the
+	 * query come first, followed by commands under a menu starting with the
+	 * query, and then by commands having a word starting with each word of the
+	 * query. If there are no such commands, fuzzy matches are returned instead.
+	 * Within each group, closer matches come first.
+	 * </p>
+	 * 
+	 * @param query The text to search for.
+	 * @param limit The maximum number of results to return.
+	 * @return Matching menu leaves, best match first.
+	 */
+	public synchronized List<ShadowMenu> search(final String query,
+		final int limit)
+	{
+		final String text = normalize(query);
+		final Set<Entry> found = new LinkedHashSet<>();
+		if (text.isEmpty() || limit <= 0) return new ArrayList<>();
+
+		// whole query as a prefix of a name or label, or of one of their words
+		collectPrefix(text, null, true, found, limit);
+
+		// whole query as a prefix of a menu on the path
+		if (found.size() < limit) collectPrefix(text, null, false, found, limit);
+
+		// each word of the query as a prefix of some word
+		final String[] words = words(text);
+		if (words.length > 1 && found.size() < limit) {
+			collectAllWords(words, found, limit);
+		}
+
+		// NB: Fuzzy matches only help when nothing matches exactly.
+		if (found.isEmpty()) collectFuzzy(text, found, limit);
+
+		final List<ShadowMenu> result = new ArrayList<>(found.size());
+		for (final Entry entry : found) {
+			result.add(entry.shadow);
+		}
+		return result;
+	}
+
+	/** Indexes the commands at or beneath the given menu nodes. */
+	public synchronized void add(final Collection<ShadowMenu> added) {
+		for (final ShadowMenu shadow : added) {
+			if (!MenuTrees.isUnder(shadow, root)) continue;
+			for (final ShadowMenu leaf : MenuTrees.leaves(shadow)) {
+				if (!entries.containsKey(leaf)) index(leaf);
+			}
+		}
+	}
+
+	/** Drops the commands at or beneath the given menu nodes. */
+	public synchronized void remove(final Collection<ShadowMenu> removed) {
+		for (final ShadowMenu shadow : removed) {
+			for (final ShadowMenu leaf : MenuTrees.leaves(shadow)) {
+				unindex(leaf);
+			}
+		}
+	}
+
+	/**
+	 * Re-indexes the commands at or beneath the given menu nodes, whose names,
+	 * labels or paths may have changed. Since the menu tree replaces the node
+	 * of an updated module, the command previously indexed for the same module
+	 * is dropped.
+	 */
+	public synchronized void update(final Collection<ShadowMenu> updated) {
+		for (final ShadowMenu shadow : updated) {
+			if (!MenuTrees.isUnder(shadow, root)) continue;
+			for (final ShadowMenu leaf : MenuTrees.leaves(shadow)) {
+				final Entry stale = identified.get(identifier(leaf));
+				if (stale != null) unindex(stale.shadow);
+				unindex(leaf);
+				index(leaf);
+			}
+		}
+	}
+
+	/**
+	 * Brings the index in line with the menu tree, e.g. after modules were
+	 * added, removed or updated before the index was subscribed to the event
+	 * service. Only commands which changed are re-indexed.
+	 */
+	public synchronized void sync() {
+		final Set<ShadowMenu> leaves = new HashSet<>(MenuTrees.leaves(root));
+		for (final ShadowMenu leaf : new ArrayList<>(entries.keySet())) {
+			if (!leaves.contains(leaf)) unindex(leaf);
+		}
+		for (final ShadowMenu leaf : leaves) {
+			final Entry entry = entries.get(leaf);
+			if (entry != null && Arrays.equals(entry.tokens, tokens(leaf))) {
+				continue;
+			}
+			unindex(leaf);
+			index(leaf);
+		}
+	}
+
+	/**
+	 * Gets the menu path of the given node, e.g. {@code File > Import}, not
+	 * including the node itself.
+	 */
+	public static String path(final ShadowMenu shadow) {
+		final StringBuilder sb = new StringBuilder();
+		for (ShadowMenu s = shadow.getParent(); s != null; s = s.getParent()) {
+			final String name = s.getName();
+			if (name == null) continue;
+			if (sb.length() > 0) sb.insert(0, " > ");
+			sb.insert(0, name);
+		}
+		return sb.toString();
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final MenusAddedEvent event) {
+		add(event.getItems());
+	}
+
+	@EventHandler
+	protected void onEvent(final MenusRemovedEvent event) {
+		remove(event.getItems());
+	}
+
+	@EventHandler
+	protected void onEvent(final MenusUpdatedEvent event) {
+		update(event.getItems());
+	}
+
+	// -- Helper methods --
+
+	private void index(final ShadowMenu leaf) {
+		final String[] tokens = tokens(leaf);
+		final Set<String> grams = new LinkedHashSet<>();
+		for (final String token : tokens) {
+			addTrigrams(token, grams);
+		}
+
+		final Entry entry = new Entry(leaf, tokens, primaryCount(leaf), grams
+			.toArray(new String[0]));
+		entries.put(leaf, entry);
+		final String id = identifier(leaf);
+		if (id != null) identified.put(id, entry);
+		for (final String token : entry.tokens) {
+			trie.insert(token, entry);
+		}
+		for (final String gram : entry.trigrams) {
+			Set<Entry> set = trigrams.get(gram);
+			if (set == null) trigrams.put(gram, set = new LinkedHashSet<>());
+			set.add(entry);
+		}
+	}
+
+	private void unindex(final ShadowMenu leaf) {
+		final Entry entry = entries.remove(leaf);
+		if (entry == null) return;
+		final String id = identifier(leaf);
+		if (id != null && identified.get(id) == entry) identified.remove(id);
+		for (final String token : entry.tokens) {
+			trie.delete(token, 0, entry);
+		}
+		for (final String gram : entry.trigrams) {
+			final Set<Entry> set = trigrams.get(gram);
+			if (set == null) continue;
+			set.remove(entry);
+			if (set.isEmpty()) trigrams.remove(gram);
+		}
+	}
+
+	/** Gets the identifier of a command's module, or null if none. */
+	private static String identifier(final ShadowMenu leaf) {
+		final ModuleInfo info = leaf.getModuleInfo();
+		return info == null ? null : info.getIdentifier();
+	}
+
+	/**
+	 * Gets the words a command is indexed by: its name and label, the words of
+	 * each, then the words of its menu path.
+	 */
+	private static String[] tokens(final ShadowMenu leaf) {
+		final Set<String> tokens = primaryTokens(leaf);
+		Collections.addAll(tokens, words(normalize(path(leaf))));
+		tokens.remove("");
+		return tokens.toArray(new String[0]);
+	}
+
+	/** Gets the number of leading tokens from the command's name and label. */
+	private static int primaryCount(final ShadowMenu leaf) {
+		final Set<String> tokens = primaryTokens(leaf);
+		tokens.remove("");
+		return tokens.size();
+	}
+
+	private static Set<String> primaryTokens(final ShadowMenu leaf) {
+		final String name = normalize(leaf.getName());
+		final ModuleInfo info = leaf.getModuleInfo();
+		final String label = info == null ? "" : normalize(info.getLabel());
+		final Set<String> tokens = new LinkedHashSet<>();
+		tokens.add(name);
+		Collections.addAll(tokens, words(name));
+		if (!label.isEmpty()) {
+			tokens.add(label);
+			Collections.addAll(tokens, words(label));
+		}
+		return tokens;
+	}
+
+	/**
+	 * Adds the commands having a word starting with the given prefix, in
+	 * breadth-first order so that shorter words come first. If {@code words}
+	 * is given, only commands with a word starting with each of them are
+	 * added. If {@code primary} is set, only commands whose name or label, or
+	 * a word of either, starts with the prefix are added.
+	 */
+	private void collectPrefix(final String prefix, final String[] words,
+		final boolean primary, final Set<Entry> found, final int limit)
+	{
+		final TrieNode start = trie.find(prefix);
+		if (start == null) return;
+		final Queue<TrieNode> queue = new ArrayDeque<>();
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			final TrieNode node = queue.remove();
+			if (node.entries != null) {
+				for (final Entry entry : node.entries) {
+					if (words != null && !entry.matchesAll(words)) continue;
+					if (primary && !entry.startsPrimary(prefix)) continue;
+					found.add(entry);
+					if (found.size() >= limit) return;
+				}
+			}
+			Collections.addAll(queue, node.children);
+		}
+	}
+
+	/**
+	 * Adds the commands having a word starting with each of the given words.
+	 * The search starts from the word with the fewest matches.
+	 */
+	private void collectAllWords(final String[] words, final Set<Entry> found,
+		final int limit)
+	{
+		String rarest = null;
+		int fewest = Integer.MAX_VALUE;
+		for (final String word : words) {
+			final TrieNode node = trie.find(word);
+			if (node == null) return; // no command matches this word
+			if (node.size < fewest) {
+				rarest = word;
+				fewest = node.size;
+			}
+		}
+		collectPrefix(rarest, words, false, found, limit);
+	}
+
+	/**
+	 * Adds the commands sharing the most trigrams with the given text, ranked
+	 * by the fraction of the query's trigrams they contain.
+	 */
+	private void collectFuzzy(final String text, final Set<Entry> found,
+		final int limit)
+	{
+		final Set<String> grams = new LinkedHashSet<>();
+		for (final String word : words(text)) {
+			addTrigrams(word, grams);
+		}
+		final List<Set<Entry>> postings = new ArrayList<>(grams.size());
+		for (final String gram : grams) {
+			final Set<Entry> set = trigrams.get(gram);
+			postings.add(set == null ? Collections.<Entry> emptySet() : set);
+		}
+		if (postings.isEmpty()) return;
+		postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+		// A match must contain at least minHits of the query's trigrams, and
+		// hence at least one of its rarest (n - minHits + 1) trigrams. Only
+		// those are scanned for candidates; the rest are merely probed.
+		final int minHits = (int) Math.ceil(MIN_COVERAGE * postings.size());
+		final int scanned = postings.size() - minHits + 1;
+		final Map<Entry, int[]> hits = new HashMap<>();
+		for (int i = 0; i < scanned; i++) {
+			for (final Entry entry : postings.get(i)) {
+				final int[] count = hits.get(entry);
+				if (count == null) hits.put(entry, new int[] { 1 });
+				else count[0]++;
+			}
+		}
+		for (int i = scanned; i < postings.size(); i++) {
+			final Set<Entry> set = postings.get(i);
+			for (final Map.Entry<Entry, int[]> hit : hits.entrySet()) {
+				if (set.contains(hit.getKey())) hit.getValue()[0]++;
+			}
+		}
+
+		final List<Map.Entry<Entry, int[]>> ranked = new ArrayList<>();
+		for (final Map.Entry<Entry, int[]> hit : hits.entrySet()) {
+			if (hit.getValue()[0] >= minHits && !found.contains(hit.getKey())) {
+				ranked.add(hit);
+			}
+		}
+		ranked.sort((a, b) -> {
+			final int byHits = Integer.compare(b.getValue()[0], a.getValue()[0]);
+			if (byHits != 0) return byHits;
+			// prefer commands with less text, which the query covers better
+			return Integer.compare(a.getKey().trigrams.length,
+				b.getKey().trigrams.length);
+		});
+		for (final Map.Entry<Entry, int[]> hit : ranked) {
+			if (found.size() >= limit) break;
+			found.add(hit.getKey());
+		}
+	}
+
+	private static String normalize(final String s) {
+		if (s == null) return "";
+		return s.toLowerCase(Locale.ENGLISH).replaceAll("[^\\p{L}\\p{N}]+", " ")
+			.trim();
+	}
+
+	private static String[] words(final String normalized) {
+		return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+	}
+
+	private static void addTrigrams(final String token, final Set<String> grams)
+	{
+		if (token.indexOf(' ') >= 0) return; // whole names are covered by words
+		final String padded = " " + token + " ";
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			grams.add(padded.substring(i, i + 3));
+		}
+	}
+
+	// -- Helper classes --
+
+	/** An indexed command. */
+	private static class Entry {
+
+		private final ShadowMenu shadow;
+		private final String[] tokens;
+
+		/** Number of leading tokens from the command's name and label. */
+		private final int primary;
+
+		private final String[] trigrams;
+
+		private Entry(final ShadowMenu shadow, final String[] tokens,
+			final int primary, final String[] trigrams)
+		{
+			this.shadow = shadow;
+			this.tokens = tokens;
+			this.primary = primary;
+			this.trigrams = trigrams;
+		}
+
+		/** Whether the name or label, or a word of either, starts with text. */
+		private boolean startsPrimary(final String text) {
+			for (int i = 0; i < primary; i++) {
+				if (tokens[i].startsWith(text)) return true;
+			}
+			return false;
+		}
+
+		/** Whether each of the given words starts one of this entry's words. */
+		private boolean matchesAll(final String[] words) {
+			for (final String word : words) {
+				boolean match = false;
+				for (final String token : tokens) {
+					if (token.startsWith(word)) {
+						match = true;
+						break;
+					}
+				}
+				if (!match) return false;
+			}
+			return true;
+		}
+	}
+
+	/** A node of the prefix trie. */
+	private static class TrieNode {
+
+		private static final char[] NO_KEYS = {};
+		private static final TrieNode[] NO_CHILDREN = {};
+
+		/** Next characters, in ascending order. */
+		private char[] keys = NO_KEYS;
+
+		/** Child nodes, parallel to {@link #keys}. */
+		private TrieNode[] children = NO_CHILDREN;
+
+		/** Commands having a word which ends at this node; null if none. */
+		private Set<Entry> entries;
+
+		/** Number of words ending at or beneath this node. */
+		private int size;
+
+		private void insert(final String token, final Entry entry) {
+			TrieNode node = this;
+			node.size++;
+			for (int i = 0; i < token.length(); i++) {
+				node = node.child(token.charAt(i), true);
+				node.size++;
+			}
+			if (node.entries == null) node.entries = new LinkedHashSet<>(2);
+			node.entries.add(entry);
+		}
+
+		private TrieNode find(final String prefix) {
+			TrieNode node = this;
+			for (int i = 0; i < prefix.length() && node != null; i++) {
+				node = node.child(prefix.charAt(i), false);
+			}
+			return node;
+		}
+
+		/**
+		 * Removes the entry from the given token, pruning empty nodes.
+		 * 
+		 * @return true iff the entry was found and removed.
+		 */
+		private boolean delete(final String token, final int offset,
+			final Entry entry)
+		{
+			if (offset == token.length()) {
+				if (entries == null || !entries.remove(entry)) return false;
+				if (entries.isEmpty()) entries = null;
+				size--;
+				return true;
+			}
+			final int index = Arrays.binarySearch(keys, token.charAt(offset));
+			if (index < 0 || !children[index].delete(token, offset + 1, entry)) {
+				return false;
+			}
+			if (children[index].size == 0) {
+				// prune the empty child
+				keys = remove(keys, index);
+				final TrieNode[] c = new TrieNode[children.length - 1];
+				System.arraycopy(children, 0, c, 0, index);
+				System.arraycopy(children, index + 1, c, index, c.length - index);
+				children = c;
+			}
+			size--;
+			return true;
+		}
+
+		private TrieNode child(final char key, final boolean create) {
+			final int index = Arrays.binarySearch(keys, key);
+			if (index >= 0) return children[index];
+			if (!create) return null;
+
+			// insert a new child, keeping the keys sorted
+			final int at = -index - 1;
+			final char[] k = new char[keys.length + 1];
+			System.arraycopy(keys, 0, k, 0, at);
+			System.arraycopy(keys, at, k, at + 1, keys.length - at);
+			k[at] = key;
+			final TrieNode[] c = new TrieNode[children.length + 1];
+			System.arraycopy(children, 0, c, 0, at);
+			System.arraycopy(children, at, c, at + 1, children.length - at);
+			c[at] = new TrieNode();
+			keys = k;
+			children = c;
+			return c[at];
+		}
+
+		private static char[] remove(final char[] array, final int index) {
+			final char[] result = new char[array.length - 1];
+			System.arraycopy(array, 0, result, 0, index);
+			System.arraycopy(array, index + 1, result, index, result.length -
+				index);
+			return result;
+		}
+	}
+
+}
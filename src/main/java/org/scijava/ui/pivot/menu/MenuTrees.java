@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.menu;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.scijava.menu.ShadowMenu;
+
+/**
+ * Utility methods for walking {@link ShadowMenu} trees.
+ * 
+ * @author Curtis Rueden
+ */
+final class MenuTrees {
+
+	private MenuTrees() {
+		// NB: Prevent instantiation of utility class.
+	}
+
+	/** Gets whether the given node is the given root or lies beneath it. */
+	static boolean isUnder(final ShadowMenu shadow, final ShadowMenu root) {
+		for (ShadowMenu s = shadow; s != null; s = s.getParent()) {
+			if (s == root) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets whether the given node is still part of the tree under the given
+	 * root, i.e., whether neither it nor any of its ancestors has been removed
+	 * from its parent.
+	 */
+	static boolean isAttached(final ShadowMenu shadow, final ShadowMenu root) {
+		for (ShadowMenu s = shadow; s != root; s = s.getParent()) {
+			final ShadowMenu parent = s.getParent();
+			if (parent == null || !parent.getChildren().contains(s)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the leaves at or beneath the given node, in breadth-first menu
+	 * order.
+	 */
+	static List<ShadowMenu> leaves(final ShadowMenu shadow) {
+		final List<ShadowMenu> leaves = new ArrayList<>();
+		final Queue<ShadowMenu> queue = new ArrayDeque<>();
+		queue.add(shadow);
+		while (!queue.isEmpty()) {
+			final ShadowMenu s = queue.remove();
+			if (s.isLeaf()) {
+				if (s.getMenuEntry() != null) leaves.add(s);
+			}
+			else queue.addAll(s.getChildren());
+		}
+		return leaves;
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.menu;
+
+import java.util.List;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.wtk.BoxPane;
+import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.ComponentKeyListener;
+import org.apache.pivot.wtk.ComponentMouseButtonListener;
+import org.apache.pivot.wtk.Display;
+import org.apache.pivot.wtk.Keyboard;
+import org.apache.pivot.wtk.ListView;
+import org.apache.pivot.wtk.Mouse;
+import org.apache.pivot.wtk.Orientation;
+import org.apache.pivot.wtk.ScrollPane;
+import org.apache.pivot.wtk.Sheet;
+import org.apache.pivot.wtk.SheetCloseListener;
+import org.apache.pivot.wtk.TextInput;
+import org.apache.pivot.wtk.TextInputContentListener;
+import org.apache.pivot.wtk.Window;
+import org.scijava.menu.ShadowMenu;
+
+/**
+ * Sheet for finding and running a command by typing part of its name.
+ * <p>
+ * Results come from a {@link CommandIndex} and are updated as the user types.
+ * The arrow keys move through the results, Enter or a double-click runs the
+ * selected command, and Escape closes the sheet.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotCommandFinder extends Sheet {
+
+	/** Maximum number of results to list. */
+	private static final int MAX_RESULTS = 50;
+
+	private final CommandIndex index;
+
+	private final TextInput queryInput;
+	private final ListView resultList;
+
+	public PivotCommandFinder(final CommandIndex index) {
+		this.index = index;
+
+		queryInput = new TextInput();
+		queryInput.setPrompt("Find command");
+		queryInput.setTextSize(40);
+		queryInput.getTextInputContentListeners().add(
+			new TextInputContentListener.Adapter()
+			{
+
+				@Override
+				public void textChanged(final TextInput textInput) {
+					updateResults();
+				}
+			});
+		queryInput.getComponentKeyListeners().add(new ComponentKeyListener() {
+
+			@Override
+			public boolean keyTyped(final Component component, final char c) {
+				return false;
+			}
+
+			@Override
+			public boolean keyPressed(final Component component, final int keyCode,
+				final Keyboard.KeyLocation location)
+			{
+				return handleKey(keyCode);
+			}
+
+			@Override
+			public boolean keyReleased(final Component component,
+				final int keyCode, final Keyboard.KeyLocation location)
+			{
+				return false;
+			}
+		});
+
+		resultList = new ListView();
+		resultList.getComponentMouseButtonListeners().add(
+			new ComponentMouseButtonListener.Adapter()
+			{
+
+				@Override
+				public boolean mouseClick(final Component component,
+					final Mouse.Button button, final int x, final int y,
+					final int count)
+				{
+					if (count == 2) close(true);
+					return false;
+				}
+			});
+		final ScrollPane scrollPane = new ScrollPane();
+		scrollPane.setHorizontalScrollBarPolicy(ScrollPane.ScrollBarPolicy.FILL);
+		scrollPane.setView(resultList);
+		scrollPane.setPreferredHeight(300);
+
+		final BoxPane pane = new BoxPane(Orientation.VERTICAL);
+		pane.getStyles().put("fill", true);
+		pane.add(queryInput);
+		pane.add(scrollPane);
+		setContent(pane);
+	}
+
+	// -- PivotCommandFinder methods --
+
+	/** Gets the command selected in the result list, or null if none. */
+	public ShadowMenu getSelectedCommand() {
+		final Result result = (Result) resultList.getSelectedItem();
+		return result == null ? null : result.shadow;
+	}
+
+	// -- Sheet methods --
+
+	@Override
+	public void open(final Display display, final Window owner,
+		final SheetCloseListener sheetCloseListener)
+	{
+		super.open(display, owner, sheetCloseListener);
+		queryInput.requestFocus();
+	}
+
+	// -- Helper methods --
+
+	private void updateResults() {
+		final List<ShadowMenu> found = index.search(queryInput.getText(),
+			MAX_RESULTS);
+		final ArrayList<Result> results = new ArrayList<>(found.size());
+		for (final ShadowMenu shadow : found) {
+			results.add(new Result(shadow));
+		}
+		resultList.setListData(results);
+		if (results.getLength() > 0) resultList.setSelectedIndex(0);
+	}
+
+	/** Handles navigation keys typed into the query field. */
+	private boolean handleKey(final int keyCode) {
+		final int count = resultList.getListData().getLength();
+		final int selected = resultList.getSelectedIndex();
+		switch (keyCode) {
+			case Keyboard.KeyCode.DOWN:
+				if (selected + 1 < count) select(selected + 1);
+				return true;
+			case Keyboard.KeyCode.UP:
+				if (selected > 0) select(selected - 1);
+				return true;
+			case Keyboard.KeyCode.ENTER:
+				close(true);
+				return true;
+			case Keyboard.KeyCode.ESCAPE:
+				close(false);
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private void select(final int index) {
+		resultList.setSelectedIndex(index);
+		resultList.scrollAreaToVisible(resultList.getItemBounds(index));
+	}
+
+	// -- Helper classes --
+
+	/** Entry of the result list, showing a command and its menu path. */
+	private static class Result {
+
+		private final ShadowMenu shadow;
+		private final String text;
+
+		private Result(final ShadowMenu shadow) {
+			this.shadow = shadow;
+			final String path = CommandIndex.path(shadow);
+			text = path.isEmpty() ? shadow.getName() : shadow.getName() + "   (" +
+				path + ")";
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+
+}
@@ -30,67 +30,301 @@
 
 package org.scijava.ui.pivot.menu;
 
-import org.apache.pivot.wtk.Action;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.pivot.wtk.ApplicationContext;
 import org.apache.pivot.wtk.BoxPane;
 import org.apache.pivot.wtk.Button;
+import org.apache.pivot.wtk.ButtonPressListener;
 import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.ComponentMouseListener;
 import org.apache.pivot.wtk.Label;
 import org.apache.pivot.wtk.Menu;
 import org.apache.pivot.wtk.Menu.SectionSequence;
 import org.apache.pivot.wtk.MenuButton;
+import org.apache.pivot.wtk.MenuItemSelectionListener;
 import org.apache.pivot.wtk.PushButton;
+import org.apache.pivot.wtk.content.ButtonData;
+import org.apache.pivot.wtk.content.MenuItemData;
+import org.apache.pivot.wtk.media.Image;
+import org.scijava.event.EventHandler;
 import org.scijava.menu.AbstractMenuCreator;
 import org.scijava.menu.ShadowMenu;
+import org.scijava.menu.event.MenusAddedEvent;
+import org.scijava.menu.event.MenusRemovedEvent;
+import org.scijava.menu.event.MenusUpdatedEvent;
 import org.scijava.module.ModuleInfo;
+import org.scijava.ui.pivot.IconCache;
 
 /**
  * Populates a {@link BoxPane} with menu items from a {@link ShadowMenu}.
+ * <p>
+ * The creator remembers the Pivot component built for each {@link ShadowMenu}
+ * node. Once subscribed to the event service, it keeps the menus in sync with
+ * the menu tree as modules are added, removed and updated, repopulating only
+ * the menus whose children actually changed. Since the menu tree replaces the
+ * node of an updated module, an update is handled as a removal plus an
+ * addition.
+ * </p>
+ * <p>
+ * Submenus are populated lazily: only the top level is built up front, and
+ * each submenu is filled in when the pointer first hovers over it or it is
+ * opened. Commands are dispatched by a few listeners shared by all items,
+ * rather than by an {@code Action} per item.
+ * </p>
+ * <p>
+ * Commands are launched through a {@link CommandDispatcher}, off the event
+ * dispatch thread. While a command is running as many times as allowed, its
+ * components are disabled.
+ * </p>
+ * <p>
+ * Icons are loaded in the background by an {@link IconCache}, with a
+ * placeholder shown in the meantime.
+ * </p>
  * 
  * @author Curtis Rueden
  */
-public class PivotMenuCreator extends AbstractMenuCreator<BoxPane, MenuButton> {
+public class PivotMenuCreator extends AbstractMenuCreator<BoxPane, Menu> {
+
+	/** Width and height of menu icons, in pixels. */
+	private static final int ICON_SIZE = 16;
+
+	/** Launches commands; null to run them directly. */
+	private final CommandDispatcher dispatcher;
+
+	/** Loads menu icons; null to show no icons. */
+	private final IconCache icons;
+
+	/** Pivot components built so far, keyed on menu node. */
+	private final Map<ShadowMenu, Node> nodes = new HashMap<>();
+
+	/** Menu nodes of the components built so far. */
+	private final Map<Component, ShadowMenu> owners = new HashMap<>();
+
+	/** Top-level menu nodes built so far. */
+	private final List<ShadowMenu> topChildren = new ArrayList<>();
+
+	/**
+	 * Runs commands chosen from a menu. Since Pivot notifies every ancestor menu
+	 * of a selection, this is attached to top-level menus only.
+	 */
+	private final MenuItemSelectionListener selectionHandler = item -> run(
+		item);
+
+	/** Runs top-level commands and populates top-level menus when pressed. */
+	private final ButtonPressListener pressHandler = button -> {
+		if (button instanceof MenuButton) materialize(button);
+		else run(button);
+	};
+
+	/** Populates top-level menus when the pointer moves over them. */
+	private final ComponentMouseListener hoverHandler =
+		new ComponentMouseListener.Adapter()
+		{
+
+			@Override
+			public void mouseOver(final Component component) {
+				materialize(component);
+			}
+		};
+
+	/** Populates submenus when their item is activated. */
+	private final Menu.ItemListener activationHandler = new Menu.ItemListener() {
+
+		@Override
+		public void menuChanged(final Menu.Item item, final Menu previousMenu) {
+			// NB: No action needed.
+		}
+
+		@Override
+		public void activeChanged(final Menu.Item item) {
+			if (item.isActive()) materialize(item);
+		}
+	};
+
+	private ShadowMenu root;
+	private BoxPane topLevel;
+
+	/** Creates a menu creator which runs commands directly when chosen. */
+	public PivotMenuCreator() {
+		this(null, null);
+	}
+
+	/**
+	 * Creates a menu creator which launches commands through the given
+	 * dispatcher when chosen, and shows icons loaded by the given cache.
+	 * 
+	 * @param dispatcher Dispatcher launching commands, or null to run them
+	 *          directly.
+	 * @param icons Cache loading icons, or null to show no icons.
+	 */
+	public PivotMenuCreator(final CommandDispatcher dispatcher,
+		final IconCache icons)
+	{
+		this.dispatcher = dispatcher;
+		this.icons = icons;
+	}
+
+	// -- PivotMenuCreator methods --
+
+	/**
+	 * Gets the Pivot component built for the given menu node: a
+	 * {@link PushButton} or {@link MenuButton} at the top level, or a
+	 * {@link Menu.Item} otherwise. Returns null if the node has no component.
+	 */
+	public Component getComponent(final ShadowMenu shadow) {
+		final Node node = nodes.get(shadow);
+		return node == null ? null : node.component;
+	}
+
+	/** Adds components for new menu nodes. Call on the event dispatch thread. */
+	public void addNodes(final Collection<ShadowMenu> added) {
+		final Set<ShadowMenu> affected = new LinkedHashSet<>();
+		added(added, affected);
+		repopulate(affected);
+	}
+
+	/**
+	 * Removes components of deleted menu nodes. Call on the event dispatch
+	 * thread.
+	 */
+	public void removeNodes(final Collection<ShadowMenu> removed) {
+		final Set<ShadowMenu> affected = new LinkedHashSet<>();
+		removed(removed, affected);
+		repopulate(affected);
+	}
+
+	/**
+	 * Replaces components of changed menu nodes. Call on the event dispatch
+	 * thread.
+	 * <p>
+	 * The menu tree updates a module's node by removing it and adding a new
+	 * one, possibly under another parent, and reports only the new one. So the
+	 * components of the old nodes, which are no longer attached to the tree,
+	 * are removed, and components are added for the new ones.
+	 * </p>
+	 */
+	public void updateNodes(final Collection<ShadowMenu> updated) {
+		final List<ShadowMenu> stale = new ArrayList<>();
+		for (final ShadowMenu shadow : nodes.keySet()) {
+			if (!MenuTrees.isAttached(shadow, root)) stale.add(shadow);
+		}
+		final Set<ShadowMenu> affected = new LinkedHashSet<>();
+		removed(stale, affected);
+		added(updated, affected);
+		repopulate(affected);
+	}
+
+	/**
+	 * Brings the built components in line with the menu tree, e.g. after
+	 * modules were added, removed or updated before the creator was subscribed
+	 * to the event service. Call on the event dispatch thread.
+	 */
+	public void sync() {
+		if (root == null) return;
+		final Set<ShadowMenu> affected = new LinkedHashSet<>();
+		affected.add(root);
+		for (final Map.Entry<ShadowMenu, Node> entry : nodes.entrySet()) {
+			final ShadowMenu shadow = entry.getKey();
+			final Node node = entry.getValue();
+			if (node.menu != null) affected.add(shadow);
+			final String name = shadow.getMenuEntry().getName();
+			if (!name.equals(node.name) && node.component instanceof Button) {
+				assignButtonData(shadow, (Button) node.component);
+				node.name = name;
+			}
+			assignProperties(shadow, node.component);
+		}
+		repopulate(affected);
+	}
+
+	// -- MenuCreator methods --
+
+	@Override
+	public void createMenus(final ShadowMenu shadow, final BoxPane target) {
+		root = shadow;
+		topLevel = target;
+		repopulate(root);
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final MenusAddedEvent event) {
+		ApplicationContext.queueCallback(() -> addNodes(event.getItems()));
+	}
+
+	@EventHandler
+	protected void onEvent(final MenusRemovedEvent event) {
+		ApplicationContext.queueCallback(() -> removeNodes(event.getItems()));
+	}
+
+	@EventHandler
+	protected void onEvent(final MenusUpdatedEvent event) {
+		ApplicationContext.queueCallback(() -> updateNodes(event.getItems()));
+	}
 
 	// -- Internal methods --
 
 	@Override
-	protected void
-		addLeafToMenu(final ShadowMenu shadow, final MenuButton target)
-	{
-		final Menu.Item item = new Menu.Item(shadow.getMenuEntry().getName());
-		linkAction(shadow, item);
+	protected void addLeafToMenu(final ShadowMenu shadow, final Menu target) {
+		final Menu.Item item = new Menu.Item();
+		assignButtonData(shadow, item);
+		assignProperties(shadow, item);
 		getLastSection(target).add(item);
+		register(shadow, item, null);
 	}
 
 	@Override
 	protected void addLeafToTop(final ShadowMenu shadow, final BoxPane target) {
 		final PushButton button = new PushButton();
-		button.setButtonData(shadow.getMenuEntry().getName());
-		linkAction(shadow, button);
+		assignButtonData(shadow, button);
+		button.getButtonPressListeners().add(pressHandler);
+		assignProperties(shadow, button);
 		target.add(button);
+		register(shadow, button, null);
 	}
 
 	@Override
-	protected MenuButton addNonLeafToMenu(final ShadowMenu shadow,
-		final MenuButton target)
-	{
-		final MenuButton button = createMenuButton(shadow);
-		final Menu.Item item = new Menu.Item(shadow.getMenuEntry().getName());
+	protected Menu addNonLeafToMenu(final ShadowMenu shadow, final Menu target) {
+		final Menu.Item item = new Menu.Item();
+		assignButtonData(shadow, item);
+		final Menu menu = createMenu();
+		item.setMenu(menu);
+		item.getItemListeners().add(activationHandler);
+		assignProperties(shadow, item);
 		getLastSection(target).add(item);
-		return button;
+		register(shadow, item, menu);
+		return menu;
 	}
 
 	@Override
-	protected MenuButton addNonLeafToTop(final ShadowMenu shadow,
+	protected Menu addNonLeafToTop(final ShadowMenu shadow,
 		final BoxPane target)
 	{
-		final MenuButton button = createMenuButton(shadow);
+		final MenuButton button = new MenuButton();
+		assignButtonData(shadow, button);
+		final Menu menu = createMenu();
+		menu.getMenuItemSelectionListeners().add(selectionHandler);
+		button.setMenu(menu);
+		button.getButtonPressListeners().add(pressHandler);
+		button.getComponentMouseListeners().add(hoverHandler);
+		assignProperties(shadow, button);
 		target.add(button);
-		return button;
+		register(shadow, button, menu);
+		return menu;
 	}
 
 	@Override
-	protected void addSeparatorToMenu(final MenuButton target) {
-		target.getMenu().getSections().add(new Menu.Section());
+	protected void addSeparatorToMenu(final Menu target) {
+		target.getSections().add(new Menu.Section());
 	}
 
 	@Override
@@ -100,36 +334,253 @@ public class PivotMenuCreator extends AbstractMenuCreator<BoxPane, MenuButton> {
 
 	// -- Helper methods --
 
-	private MenuButton createMenuButton(final ShadowMenu shadow) {
-		final MenuButton button = new MenuButton();
-		button.setButtonData(shadow.getMenuEntry().getName());
+	private Menu createMenu() {
 		final Menu menu = new Menu();
-		button.setMenu(menu);
 		menu.getSections().add(new Menu.Section());
-		assignProperties(shadow, button);
-		return button;
+		return menu;
 	}
 
-	private Menu.Section getLastSection(final MenuButton target) {
-		final SectionSequence sections = target.getMenu().getSections();
+	private Menu.Section getLastSection(final Menu target) {
+		final SectionSequence sections = target.getSections();
 		return sections.get(sections.getLength() - 1);
 	}
 
-	private void
-		assignProperties(final ShadowMenu shadow, final MenuButton button)
+	/**
+	 * Sets the label of the given button. If the node has an icon, a
+	 * placeholder is shown until the icon has been loaded in the background.
+	 */
+	private void assignButtonData(final ShadowMenu shadow, final Button button) {
+		final String name = shadow.getMenuEntry().getName();
+		if (icons == null || !hasIcon(shadow)) {
+			button.setButtonData(name);
+			return;
+		}
+		button.setButtonData(buttonData(button, icons.getPlaceholder(ICON_SIZE),
+			name));
+		icons.load(shadow::getIconURL, ICON_SIZE).whenComplete((icon,
+			exc) -> ApplicationContext.queueCallback(() -> {
+				// NB: Skip buttons which were since discarded or relabeled.
+				final Node node = nodes.get(shadow);
+				if (node == null || node.component != button) return;
+				if (!name.equals(shadow.getMenuEntry().getName())) return;
+				button.setButtonData(icon == null ? name : buttonData(button, icon,
+					name));
+			}));
+	}
+
+	private boolean hasIcon(final ShadowMenu shadow) {
+		if (shadow.getMenuEntry().getIconPath() != null) return true;
+		final ModuleInfo info = shadow.getModuleInfo();
+		return info != null && info.getIconPath() != null;
+	}
+
+	private ButtonData buttonData(final Button button, final Image icon,
+		final String name)
+	{
+		return button instanceof Menu.Item ? new MenuItemData(icon, name)
+			: new ButtonData(icon, name);
+	}
+
+	private void assignProperties(final ShadowMenu shadow,
+		final Component component)
 	{
 		final ModuleInfo info = shadow.getModuleInfo();
-		if (info != null) button.setEnabled(info.isEnabled());
+		if (info == null) return;
+		final boolean saturated = dispatcher != null && dispatcher.isSaturated(
+			shadow);
+		component.setEnabled(info.isEnabled() && !saturated);
 	}
 
-	private void linkAction(final ShadowMenu shadow, final Button button) {
-		button.setAction(new Action() {
+	/** Runs the command of the given leaf component. */
+	private void run(final Component component) {
+		final ShadowMenu shadow = owners.get(component);
+		if (shadow == null || !shadow.isLeaf()) return;
+		if (dispatcher == null) {
+			shadow.run();
+			return;
+		}
+		final CompletableFuture<Void> done = dispatcher.dispatch(shadow);
+		if (done == null) return;
+		// disable the command's component while it cannot be run again
+		assignProperties(shadow, component);
+		done.whenComplete((result, exc) -> ApplicationContext.queueCallback(
+			() -> {
+				final Node node = nodes.get(shadow);
+				if (node != null) assignProperties(shadow, node.component);
+			}));
+	}
 
-			@Override
-			public void perform(final Component c) {
-				shadow.run();
+	/** Populates the submenu of the given component, if not already done. */
+	private void materialize(final Component component) {
+		final ShadowMenu shadow = owners.get(component);
+		if (shadow == null) return;
+		final Node node = nodes.get(shadow);
+		if (node != null && node.menu != null && !node.populated) {
+			repopulate(shadow);
+		}
+	}
+
+	private void register(final ShadowMenu shadow, final Component component,
+		final Menu menu)
+	{
+		final Node node = new Node(component, menu);
+		node.name = shadow.getMenuEntry().getName();
+		nodes.put(shadow, node);
+		owners.put(component, shadow);
+		final ShadowMenu parent = shadow.getParent();
+		if (parent == root) topChildren.add(shadow);
+		else {
+			final Node parentNode = nodes.get(parent);
+			if (parentNode != null) parentNode.children.add(shadow);
+		}
+	}
+
+	/** Adds the menus whose children gained the given nodes. */
+	private void added(final Collection<ShadowMenu> added,
+		final Set<ShadowMenu> affected)
+	{
+		for (final ShadowMenu shadow : added) {
+			if (nodes.containsKey(shadow) || !MenuTrees.isUnder(shadow, root)) {
+				continue;
+			}
+			// find the nearest ancestor which has already been built
+			ShadowMenu parent = shadow.getParent();
+			while (parent != root && !nodes.containsKey(parent)) {
+				parent = parent.getParent();
+			}
+			affected.add(parent);
+		}
+	}
+
+	/** Adds the menus whose children lost the given nodes. */
+	private void removed(final Collection<ShadowMenu> removed,
+		final Set<ShadowMenu> affected)
+	{
+		for (final ShadowMenu shadow : removed) {
+			if (!nodes.containsKey(shadow) || !MenuTrees.isUnder(shadow, root)) {
+				continue;
 			}
-		});
+			// empty parent menus may have been pruned along with the node
+			ShadowMenu parent = shadow.getParent();
+			while (parent != root && !parent.getParent().getChildren().contains(
+				parent))
+			{
+				parent = parent.getParent();
+			}
+			affected.add(parent);
+		}
+	}
+
+	private void repopulate(final Set<ShadowMenu> parents) {
+		for (final ShadowMenu parent : parents) {
+			if (parent == root) repopulate(parent);
+			else {
+				// NB: Unpopulated menus will pick up the changes when first opened.
+				final Node node = nodes.get(parent);
+				if (node != null && node.populated) repopulate(parent);
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the list of children of the given menu, reusing the components
+	 * of existing children and building components for new ones. Submenus of
+	 * new children are left empty until needed.
+	 */
+	private void repopulate(final ShadowMenu parent) {
+		final List<ShadowMenu> oldChildren;
+		final Menu menu;
+		if (parent == root) {
+			oldChildren = new ArrayList<>(topChildren);
+			topChildren.clear();
+			topLevel.removeAll();
+			menu = null;
+		}
+		else {
+			final Node parentNode = nodes.get(parent);
+			parentNode.populated = true;
+			oldChildren = new ArrayList<>(parentNode.children);
+			parentNode.children.clear();
+			menu = parentNode.menu;
+			// NB: Items must be detached from their old sections to be reused.
+			for (final Menu.Section section : menu.getSections()) {
+				section.remove(0, section.getLength());
+			}
+			menu.getSections().clear();
+			menu.getSections().add(new Menu.Section());
+		}
+
+		double lastWeight = Double.NaN;
+		for (final ShadowMenu child : parent.getChildren()) {
+			final double weight = child.getMenuEntry().getWeight();
+			if (Math.abs(weight - lastWeight) > 1) {
+				if (menu == null) addSeparatorToTop(topLevel);
+				else addSeparatorToMenu(menu);
+			}
+			lastWeight = weight;
+
+			final Node node = nodes.get(child);
+			if (node != null) {
+				// reuse the existing component
+				if (menu == null) {
+					topLevel.add(node.component);
+					topChildren.add(child);
+				}
+				else {
+					getLastSection(menu).add((Menu.Item) node.component);
+					nodes.get(parent).children.add(child);
+				}
+				oldChildren.remove(child);
+			}
+			else if (child.isLeaf()) {
+				if (menu == null) addLeafToTop(child, topLevel);
+				else addLeafToMenu(child, menu);
+			}
+			else {
+				if (menu == null) addNonLeafToTop(child, topLevel);
+				else addNonLeafToMenu(child, menu);
+			}
+		}
+
+		// forget components of children which are gone
+		for (final ShadowMenu gone : oldChildren) {
+			forget(gone);
+		}
+	}
+
+	private void forget(final ShadowMenu shadow) {
+		final Node node = nodes.remove(shadow);
+		if (node == null) return;
+		owners.remove(node.component);
+		for (final ShadowMenu child : node.children) {
+			forget(child);
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Pivot components of a menu node. */
+	private static class Node {
+
+		/** Component representing the node in its parent. */
+		private final Component component;
+
+		/** Menu holding the node's children, or null for leaves. */
+		private final Menu menu;
+
+		/** Children whose components have been built. */
+		private final List<ShadowMenu> children = new ArrayList<>();
+
+		/** Whether the children's components have been built. */
+		private boolean populated;
+
+		/** Name shown by the component. */
+		private String name;
+
+		private Node(final Component component, final Menu menu) {
+			this.component = component;
+			this.menu = menu;
+		}
 	}
 
 }
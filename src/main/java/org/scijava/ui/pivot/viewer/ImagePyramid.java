@@ -0,0 +1,300 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.viewer;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Multi-resolution tile pyramid over a {@link TileSource}.
+ * <p>
+ * Level 0 is full resolution; each further level halves the width and height.
+ * Tiles are rendered on demand, on a background executor: level 0 tiles are
+ * read from the source, and the next few levels are downsampled from the four
+ * tiles beneath them, each rendered and cached as a tile of its own. Coarser
+ * tiles are downsampled from a subsampled read of the source instead, so that
+ * no tile needs more than a bounded number of source pixels, however large
+ * the image. Rendered tiles are kept in a bounded, least-recently-used cache.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class ImagePyramid {
+
+	/** Width and height of a tile, in pixels. */
+	public static final int TILE_SIZE = 256;
+
+	/** Default maximum number of cached tiles (about 256 MB of ARGB pixels). */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Coarsest level downsampled from the level beneath, whose tiles each cover
+	 * up to 64 level 0 tiles.
+	 */
+	private static final int MAX_DOWNSAMPLED_LEVEL = 3;
+
+	private final TileSource source;
+	private final Executor executor;
+	private final int levelCount;
+
+	/** Rendered tiles, in access order. */
+	private final LinkedHashMap<Tile, BufferedImage> cache;
+
+	/** Tiles currently being rendered. */
+	private final Map<Tile, CompletableFuture<BufferedImage>> pending =
+		new ConcurrentHashMap<>();
+
+	public ImagePyramid(final TileSource source, final Executor executor) {
+		this(source, executor, DEFAULT_CAPACITY);
+	}
+
+	public ImagePyramid(final TileSource source, final Executor executor,
+		final int capacity)
+	{
+		this.source = source;
+		this.executor = executor;
+		int levels = 1;
+		while (Math.max(getWidth(levels - 1), getHeight(levels - 1)) > TILE_SIZE) {
+			levels++;
+		}
+		levelCount = levels;
+		cache = new LinkedHashMap<Tile, BufferedImage>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<Tile, BufferedImage> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	// -- ImagePyramid methods --
+
+	public TileSource getSource() {
+		return source;
+	}
+
+	/** Gets the number of resolution levels. */
+	public int getLevelCount() {
+		return levelCount;
+	}
+
+	/** Gets the width of the image at the given level, in pixels. */
+	public int getWidth(final int level) {
+		return scaled(source.getWidth(), level);
+	}
+
+	/** Gets the height of the image at the given level, in pixels. */
+	public int getHeight(final int level) {
+		return scaled(source.getHeight(), level);
+	}
+
+	/** Gets the number of tile columns at the given level. */
+	public int getColumns(final int level) {
+		return (getWidth(level) + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	/** Gets the number of tile rows at the given level. */
+	public int getRows(final int level) {
+		return (getHeight(level) + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	/**
+	 * Gets the given tile if it has already been rendered, or null otherwise.
+	 * Never blocks.
+	 */
+	public BufferedImage getTile(final int level, final int col, final int row) {
+		final Tile tile = new Tile(level, col, row);
+		synchronized (cache) {
+			return cache.get(tile);
+		}
+	}
+
+	/**
+	 * Renders the given tile in the background, unless it is already cached or
+	 * being rendered.
+	 */
+	public CompletableFuture<BufferedImage> requestTile(final int level,
+		final int col, final int row)
+	{
+		final Tile tile = new Tile(level, col, row);
+		synchronized (cache) {
+			final BufferedImage image = cache.get(tile);
+			if (image != null) return CompletableFuture.completedFuture(image);
+		}
+		final CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+		final CompletableFuture<BufferedImage> existing =
+			pending.putIfAbsent(tile, future);
+		if (existing != null) return existing;
+		render(tile).whenComplete((image, exc) -> {
+			if (exc == null) {
+				synchronized (cache) {
+					cache.put(tile, image);
+				}
+			}
+			pending.remove(tile, future);
+			if (exc == null) future.complete(image);
+			else future.completeExceptionally(exc);
+		});
+		return future;
+	}
+
+	/** Discards all rendered tiles, e.g. because the image has changed. */
+	public void invalidate() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	// -- Helper methods --
+
+	private static int scaled(final int size, final int level) {
+		return Math.max(1, (int) Math.ceil(size / Math.pow(2, level)));
+	}
+
+	/** Renders the given tile in the background, without caching it. */
+	private CompletableFuture<BufferedImage> render(final Tile tile) {
+		if (tile.level == 0) {
+			return CompletableFuture.supplyAsync(() -> read(tile), executor);
+		}
+		if (tile.level > MAX_DOWNSAMPLED_LEVEL) {
+			return CompletableFuture.supplyAsync(() -> sample(tile), executor);
+		}
+
+		// NB: Render the children as tiles of their own, without blocking.
+		final int level = tile.level - 1;
+		final int rows = Math.min(2, getRows(level) - 2 * tile.row);
+		final int cols = Math.min(2, getColumns(level) - 2 * tile.col);
+		@SuppressWarnings("unchecked")
+		final CompletableFuture<BufferedImage>[] children =
+			(CompletableFuture<BufferedImage>[]) new CompletableFuture<?>[rows *
+				cols];
+		for (int dy = 0; dy < rows; dy++) {
+			for (int dx = 0; dx < cols; dx++) {
+				children[dy * cols + dx] = requestTile(level, 2 * tile.col + dx, 2 *
+					tile.row + dy);
+			}
+		}
+		return CompletableFuture.allOf(children).thenApplyAsync(v -> {
+			final BufferedImage image = create(tile);
+			final Graphics2D g = graphics(image);
+			try {
+				final int half = TILE_SIZE / 2;
+				for (int i = 0; i < children.length; i++) {
+					final BufferedImage child = children[i].join();
+					g.drawImage(child, i % cols * half, i / cols * half, (child
+						.getWidth() + 1) / 2, (child.getHeight() + 1) / 2, null);
+				}
+			}
+			finally {
+				g.dispose();
+			}
+			return image;
+		}, executor);
+	}
+
+	private BufferedImage read(final Tile tile) {
+		final int x = tile.col * TILE_SIZE, y = tile.row * TILE_SIZE;
+		final int w = Math.min(TILE_SIZE, getWidth(0) - x);
+		final int h = Math.min(TILE_SIZE, getHeight(0) - y);
+		return source.read(new Rectangle(x, y, w, h));
+	}
+
+	/**
+	 * Renders a coarse tile from the source, sampled at twice the tile's
+	 * resolution and downsampled to smooth it.
+	 */
+	private BufferedImage sample(final Tile tile) {
+		final int span = TILE_SIZE << tile.level;
+		final int x = tile.col * span, y = tile.row * span;
+		final Rectangle region = new Rectangle(x, y, Math.min(span, getWidth(0) -
+			x), Math.min(span, getHeight(0) - y));
+		final BufferedImage samples = source.read(region, 1 << (tile.level - 1));
+		final BufferedImage image = create(tile);
+		final Graphics2D g = graphics(image);
+		try {
+			g.drawImage(samples, 0, 0, image.getWidth(), image.getHeight(), null);
+		}
+		finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/** Creates an empty image of the given tile's size. */
+	private BufferedImage create(final Tile tile) {
+		final int level = tile.level;
+		final int w = Math.min(TILE_SIZE, getWidth(level) - tile.col * TILE_SIZE);
+		final int h = Math.min(TILE_SIZE, getHeight(level) - tile.row * TILE_SIZE);
+		return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+	}
+
+	private static Graphics2D graphics(final BufferedImage image) {
+		final Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+			RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		return g;
+	}
+
+	// -- Helper classes --
+
+	private static class Tile {
+
+		private final int level, col, row;
+
+		private Tile(final int level, final int col, final int row) {
+			this.level = level;
+			this.col = col;
+			this.row = row;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Tile)) return false;
+			final Tile t = (Tile) o;
+			return level == t.level && col == t.col && row == t.row;
+		}
+
+		@Override
+		public int hashCode() {
+			return (level * 31 + col) * 31 + row;
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.viewer;
+
+import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.Frame;
+import org.apache.pivot.wtk.Point;
+import org.scijava.ui.viewer.DisplayPanel;
+import org.scijava.ui.viewer.DisplayWindow;
+import org.scijava.widget.UIComponent;
+
+/**
+ * Pivot implementation of {@link DisplayWindow}, wrapping a {@link Frame}. Its
+ * content must be a {@link DisplayPanel} which is also a {@link UIComponent}
+ * of some Pivot {@link Component}.
+ * <p>
+ * NB: This class cannot simply extend {@link Frame}, since
+ * {@link Component#requestFocus()} and {@link DisplayWindow#requestFocus()}
+ * have incompatible return types.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotDisplayWindow implements DisplayWindow {
+
+	private final org.apache.pivot.wtk.Display display;
+	private final Frame frame = new Frame();
+
+	public PivotDisplayWindow(final org.apache.pivot.wtk.Display display) {
+		this.display = display;
+	}
+
+	// -- PivotDisplayWindow methods --
+
+	public Frame getFrame() {
+		return frame;
+	}
+
+	// -- DisplayWindow methods --
+
+	@Override
+	public void setTitle(final String s) {
+		frame.setTitle(s);
+	}
+
+	@Override
+	public void setContent(final DisplayPanel panel) {
+		frame.setContent((Component) ((UIComponent<?>) panel).getComponent());
+	}
+
+	@Override
+	public void pack() {
+		frame.setSize(frame.getPreferredSize());
+	}
+
+	@Override
+	public void showDisplay(final boolean visible) {
+		if (visible && !frame.isOpen()) frame.open(display);
+		else if (!visible && frame.isOpen()) frame.close();
+	}
+
+	@Override
+	public void requestFocus() {
+		frame.requestActive();
+	}
+
+	@Override
+	public void close() {
+		if (frame.isOpen()) frame.close();
+	}
+
+	@Override
+	public int findDisplayContentScreenX() {
+		return contentLocation().x;
+	}
+
+	@Override
+	public int findDisplayContentScreenY() {
+		return contentLocation().y;
+	}
+
+	// -- Helper methods --
+
+	private Point contentLocation() {
+		final Component content = frame.getContent();
+		if (content == null) return frame.getLocation();
+		return content.mapPointToAncestor(display, 0, 0);
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.viewer;
+
+import java.awt.image.RenderedImage;
+
+import org.apache.pivot.wtk.Label;
+import org.apache.pivot.wtk.TablePane;
+import org.scijava.display.Display;
+import org.scijava.ui.viewer.DisplayPanel;
+import org.scijava.ui.viewer.DisplayWindow;
+import org.scijava.widget.UIComponent;
+
+/**
+ * Pivot {@link DisplayPanel} which shows an image as tiles of an
+ * {@link ImagePyramid}.
+ * <p>
+ * NB: The panel wraps its Pivot component rather than extending it, since
+ * {@link org.apache.pivot.wtk.Component#getDisplay()} and
+ * {@link DisplayPanel#getDisplay()} have incompatible return types.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotImageDisplayPanel implements DisplayPanel,
+	UIComponent<TablePane>
+{
+
+	private final Display<?> display;
+	private final DisplayWindow window;
+
+	private final TablePane tablePane = new TablePane();
+	private final Label label = new Label();
+	private final TiledImageView view = new TiledImageView();
+
+	public PivotImageDisplayPanel(final Display<?> display,
+		final DisplayWindow window, final ImagePyramid pyramid)
+	{
+		this.display = display;
+		this.window = window;
+
+		final TablePane.Column column = new TablePane.Column();
+		column.setWidth("1*");
+		tablePane.getColumns().add(column);
+
+		final TablePane.Row labelRow = new TablePane.Row();
+		labelRow.setHeight("-1");
+		labelRow.add(label);
+		tablePane.getRows().add(labelRow);
+
+		final TablePane.Row viewRow = new TablePane.Row();
+		viewRow.setHeight("1*");
+		viewRow.add(view);
+		tablePane.getRows().add(viewRow);
+
+		view.setPyramid(pyramid);
+	}
+
+	// -- PivotImageDisplayPanel methods --
+
+	public TiledImageView getView() {
+		return view;
+	}
+
+	/** Gets the image shown by the given display, or null if none. */
+	public static RenderedImage getImage(final Display<?> display) {
+		for (final Object o : display) {
+			if (o instanceof RenderedImage) return (RenderedImage) o;
+		}
+		return null;
+	}
+
+	// -- DisplayPanel methods --
+
+	@Override
+	public Display<?> getDisplay() {
+		return display;
+	}
+
+	@Override
+	public DisplayWindow getWindow() {
+		return window;
+	}
+
+	@Override
+	public void redoLayout() {
+		tablePane.invalidate();
+	}
+
+	@Override
+	public void setLabel(final String s) {
+		label.setText(s == null ? "" : s);
+	}
+
+	@Override
+	public void redraw() {
+		view.refresh();
+	}
+
+	// -- UIComponent methods --
+
+	@Override
+	public TablePane getComponent() {
+		return tablePane;
+	}
+
+	@Override
+	public Class<TablePane> getComponentType() {
+		return TablePane.class;
+	}
+
+}
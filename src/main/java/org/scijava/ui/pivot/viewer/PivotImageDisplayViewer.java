@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.viewer;
+
+import java.awt.image.RenderedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.scijava.display.Display;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
+import org.scijava.ui.UserInterface;
+import org.scijava.ui.pivot.PivotUI;
+import org.scijava.ui.viewer.AbstractDisplayViewer;
+import org.scijava.ui.viewer.DisplayViewer;
+import org.scijava.ui.viewer.DisplayWindow;
+
+/**
+ * Pivot {@link DisplayViewer} for displays of {@link RenderedImage}s.
+ * <p>
+ * Tiles are rendered on a small pool of worker threads, sized to the number of
+ * processors, which is shut down when the viewer is disposed.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+@Plugin(type = DisplayViewer.class)
+public class PivotImageDisplayViewer extends
+	AbstractDisplayViewer<RenderedImage>
+{
+
+	@Parameter
+	private ThreadService threadService;
+
+	private ExecutorService tileExecutor;
+
+	// -- DisplayViewer methods --
+
+	@Override
+	public boolean isCompatible(final UserInterface ui) {
+		return ui instanceof PivotUI;
+	}
+
+	@Override
+	public boolean canView(final Display<?> d) {
+		return PivotImageDisplayPanel.getImage(d) != null;
+	}
+
+	@Override
+	public void view(final DisplayWindow w, final Display<?> d) {
+		super.view(w, d);
+		tileExecutor = Executors.newFixedThreadPool(Runtime.getRuntime()
+			.availableProcessors(), threadService);
+		final TileSource source = new RenderedImageTileSource(
+			PivotImageDisplayPanel.getImage(d));
+		final ImagePyramid pyramid = new ImagePyramid(source, tileExecutor);
+		final PivotImageDisplayPanel panel = new PivotImageDisplayPanel(d, w,
+			pyramid);
+		setPanel(panel);
+		w.setContent(panel);
+		w.pack();
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		if (tileExecutor != null) tileExecutor.shutdownNow();
+		tileExecutor = null;
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.viewer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.Hashtable;
+
+/**
+ * {@link TileSource} backed by a {@link RenderedImage}, which may itself be
+ * tiled.
+ * 
+ * @author Curtis Rueden
+ */
+public class RenderedImageTileSource implements TileSource {
+
+	private final RenderedImage image;
+
+	public RenderedImageTileSource(final RenderedImage image) {
+		this.image = image;
+	}
+
+	// -- TileSource methods --
+
+	@Override
+	public int getWidth() {
+		return image.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return image.getHeight();
+	}
+
+	@Override
+	public BufferedImage read(final Rectangle region) {
+		final Rectangle r = region.intersection(new Rectangle(image.getMinX(),
+			image.getMinY(), image.getWidth(), image.getHeight()));
+		final Raster data = image.getData(r);
+		final WritableRaster raster = data.createCompatibleWritableRaster(r.width,
+			r.height);
+		raster.setRect(-r.x, -r.y, data);
+		final ColorModel cm = image.getColorModel();
+		return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(),
+			new Hashtable<>());
+	}
+
+	@Override
+	public BufferedImage read(final Rectangle region, final int stride) {
+		if (stride == 1) return read(region);
+		final Rectangle r = region.intersection(new Rectangle(image.getMinX(),
+			image.getMinY(), image.getWidth(), image.getHeight()));
+		final int w = (r.width + stride - 1) / stride;
+		final int h = (r.height + stride - 1) / stride;
+		final WritableRaster raster = Raster.createWritableRaster(image
+			.getSampleModel().createCompatibleSampleModel(w, h), null);
+
+		// sample the source tiles in place, skipping any without sample points
+		final int tw = image.getTileWidth(), th = image.getTileHeight();
+		final int gx = image.getTileGridXOffset(), gy = image.getTileGridYOffset();
+		final int minTX = Math.floorDiv(r.x - gx, tw);
+		final int maxTX = Math.floorDiv(r.x + r.width - 1 - gx, tw);
+		final int minTY = Math.floorDiv(r.y - gy, th);
+		final int maxTY = Math.floorDiv(r.y + r.height - 1 - gy, th);
+		Object pixel = null;
+		for (int ty = minTY; ty <= maxTY; ty++) {
+			final int y0 = first(Math.max(r.y, gy + ty * th), r.y, stride);
+			final int y1 = Math.min(r.y + r.height, gy + (ty + 1) * th);
+			if (y0 >= y1) continue;
+			for (int tx = minTX; tx <= maxTX; tx++) {
+				final int x0 = first(Math.max(r.x, gx + tx * tw), r.x, stride);
+				final int x1 = Math.min(r.x + r.width, gx + (tx + 1) * tw);
+				if (x0 >= x1) continue;
+				final Raster tile = image.getTile(tx, ty);
+				for (int y = y0; y < y1; y += stride) {
+					for (int x = x0; x < x1; x += stride) {
+						pixel = tile.getDataElements(x, y, pixel);
+						raster.setDataElements((x - r.x) / stride, (y - r.y) / stride,
+							pixel);
+					}
+				}
+			}
+		}
+		final ColorModel cm = image.getColorModel();
+		return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(),
+			new Hashtable<>());
+	}
+
+	// -- Helper methods --
+
+	/** Gets the first sample point at or after {@code pos}. */
+	private static int first(final int pos, final int origin, final int stride) {
+		return origin + (pos - origin + stride - 1) / stride * stride;
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.viewer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Source of full-resolution image pixels, read one region at a time.
+ * 
+ * @author Curtis Rueden
+ */
+public interface TileSource {
+
+	/** Gets the width of the image, in pixels. */
+	int getWidth();
+
+	/** Gets the height of the image, in pixels. */
+	int getHeight();
+
+	/**
+	 * Reads the given region of the image. May be called concurrently from
+	 * multiple threads, never on the event dispatch thread.
+	 */
+	BufferedImage read(Rectangle region);
+
+	/**
+	 * Reads every {@code stride}-th pixel, in each dimension, of the given
+	 * region of the image. The default implementation reads one sampled line
+	 * of the region at a time; sources which can skip pixels more cheaply
+	 * should override it.
+	 */
+	default BufferedImage read(final Rectangle region, final int stride) {
+		if (stride == 1) return read(region);
+		final int w = (region.width + stride - 1) / stride;
+		final int h = (region.height + stride - 1) / stride;
+		final BufferedImage image =
+			new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		for (int j = 0; j < h; j++) {
+			final BufferedImage line = read(new Rectangle(region.x, region.y + j *
+				stride, region.width, 1));
+			for (int i = 0; i < w; i++) {
+				image.setRGB(i, j, line.getRGB(i * stride, 0));
+			}
+		}
+		return image;
+	}
+
+}
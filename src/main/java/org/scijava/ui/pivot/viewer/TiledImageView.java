@@ -0,0 +1,304 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.viewer;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import org.apache.pivot.wtk.ApplicationContext;
+import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.Mouse;
+import org.apache.pivot.wtk.skin.ComponentSkin;
+
+/**
+ * Pivot component which displays an {@link ImagePyramid}, painting only the
+ * tiles that are visible at the current pan and zoom.
+ * <p>
+ * Tiles not yet rendered are requested from the pyramid in the background and
+ * painted when ready; in the meantime, the best coarser tile already cached is
+ * stretched over the gap. Drag to pan; use the mouse wheel to zoom.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class TiledImageView extends Component {
+
+	private static final double ZOOM_STEP = 1.25;
+
+	private ImagePyramid pyramid;
+
+	/** Screen pixels per image pixel. */
+	private double zoom = 1;
+
+	/** Image coordinates of the component's top left corner. */
+	private double offsetX, offsetY;
+
+	private boolean fitPending = true;
+
+	public TiledImageView() {
+		setSkin(new TiledImageViewSkin());
+	}
+
+	// -- TiledImageView methods --
+
+	public ImagePyramid getPyramid() {
+		return pyramid;
+	}
+
+	public void setPyramid(final ImagePyramid pyramid) {
+		this.pyramid = pyramid;
+		fitPending = true;
+		invalidate();
+		repaint();
+	}
+
+	public double getZoom() {
+		return zoom;
+	}
+
+	/** Sets the zoom, keeping the given screen point fixed. */
+	public void setZoom(final double zoom, final int x, final int y) {
+		final double imageX = offsetX + x / this.zoom;
+		final double imageY = offsetY + y / this.zoom;
+		this.zoom = zoom;
+		offsetX = imageX - x / zoom;
+		offsetY = imageY - y / zoom;
+		repaint();
+	}
+
+	/** Pans the view by the given number of screen pixels. */
+	public void pan(final int dx, final int dy) {
+		offsetX -= dx / zoom;
+		offsetY -= dy / zoom;
+		repaint();
+	}
+
+	/** Zooms so that the whole image fits within the component. */
+	public void zoomToFit() {
+		if (pyramid == null || getWidth() == 0 || getHeight() == 0) return;
+		final TileSource source = pyramid.getSource();
+		zoom = Math.min((double) getWidth() / source.getWidth(),
+			(double) getHeight() / source.getHeight());
+		offsetX = 0;
+		offsetY = 0;
+		fitPending = false;
+		repaint();
+	}
+
+	/** Discards rendered tiles and repaints, e.g. after the image changes. */
+	public void refresh() {
+		if (pyramid != null) pyramid.invalidate();
+		repaint();
+	}
+
+	// -- Helper methods --
+
+	/** Gets the pyramid level best matching the current zoom. */
+	private int level() {
+		final int level = (int) Math.floor(Math.log(1 / zoom) / Math.log(2));
+		return Math.max(0, Math.min(pyramid.getLevelCount() - 1, level));
+	}
+
+	/** Gets the screen bounds of the given tile. */
+	private Rectangle bounds(final int level, final int col, final int row) {
+		final double span = ImagePyramid.TILE_SIZE * Math.pow(2, level) * zoom;
+		final int x0 = (int) Math.floor((col * span) - offsetX * zoom);
+		final int y0 = (int) Math.floor((row * span) - offsetY * zoom);
+		final int x1 = (int) Math.ceil(((col + 1) * span) - offsetX * zoom);
+		final int y1 = (int) Math.ceil(((row + 1) * span) - offsetY * zoom);
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+	}
+
+	// -- Helper classes --
+
+	private static class TiledImageViewSkin extends ComponentSkin {
+
+		private int dragX, dragY;
+		private boolean dragging;
+
+		private TiledImageView view() {
+			return (TiledImageView) getComponent();
+		}
+
+		// -- Skin methods --
+
+		@Override
+		public int getPreferredWidth(final int height) {
+			final ImagePyramid pyramid = view().pyramid;
+			return pyramid == null ? 0 : Math.min(800, pyramid.getWidth(0));
+		}
+
+		@Override
+		public int getPreferredHeight(final int width) {
+			final ImagePyramid pyramid = view().pyramid;
+			return pyramid == null ? 0 : Math.min(600, pyramid.getHeight(0));
+		}
+
+		@Override
+		public void layout() {
+			if (view().fitPending) view().zoomToFit();
+		}
+
+		@Override
+		public void paint(final Graphics2D graphics) {
+			final TiledImageView view = view();
+			final ImagePyramid pyramid = view.pyramid;
+			if (pyramid == null) return;
+
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			Rectangle clip = graphics.getClipBounds();
+			if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+			final int level = view.level();
+			final double span = ImagePyramid.TILE_SIZE * Math.pow(2, level) *
+				view.zoom;
+			final int col0 = Math.max(0, (int) Math.floor((clip.x +
+				view.offsetX * view.zoom) / span));
+			final int row0 = Math.max(0, (int) Math.floor((clip.y +
+				view.offsetY * view.zoom) / span));
+			final int col1 = Math.min(pyramid.getColumns(level) - 1, (int) Math
+				.floor((clip.x + clip.width + view.offsetX * view.zoom) / span));
+			final int row1 = Math.min(pyramid.getRows(level) - 1, (int) Math.floor(
+				(clip.y + clip.height + view.offsetY * view.zoom) / span));
+
+			for (int row = row0; row <= row1; row++) {
+				for (int col = col0; col <= col1; col++) {
+					final BufferedImage tile = pyramid.getTile(level, col, row);
+					if (tile != null) {
+						draw(graphics, tile, view.bounds(level, col, row));
+					}
+					else {
+						paintFallback(graphics, level, col, row);
+						request(level, col, row);
+					}
+				}
+			}
+		}
+
+		// -- ComponentMouseListener methods --
+
+		@Override
+		public boolean mouseDown(final Component component,
+			final Mouse.Button button, final int x, final int y)
+		{
+			if (button != Mouse.Button.LEFT) return false;
+			dragging = true;
+			dragX = x;
+			dragY = y;
+			Mouse.capture(component);
+			return true;
+		}
+
+		@Override
+		public boolean mouseMove(final Component component, final int x,
+			final int y)
+		{
+			if (!dragging) return false;
+			view().pan(x - dragX, y - dragY);
+			dragX = x;
+			dragY = y;
+			return true;
+		}
+
+		@Override
+		public boolean mouseUp(final Component component,
+			final Mouse.Button button, final int x, final int y)
+		{
+			if (!dragging || button != Mouse.Button.LEFT) return false;
+			dragging = false;
+			Mouse.release();
+			return true;
+		}
+
+		@Override
+		public boolean mouseWheel(final Component component,
+			final Mouse.ScrollType scrollType, final int scrollAmount,
+			final int wheelRotation, final int x, final int y)
+		{
+			final TiledImageView view = view();
+			final double factor = wheelRotation < 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+			view.setZoom(view.zoom * factor, x, y);
+			return true;
+		}
+
+		// -- Helper methods --
+
+		private void draw(final Graphics2D graphics, final BufferedImage tile,
+			final Rectangle bounds)
+		{
+			// NB: Edge tiles may be smaller than a full tile.
+			final double scale = (double) bounds.width / ImagePyramid.TILE_SIZE;
+			graphics.drawImage(tile, bounds.x, bounds.y, (int) Math.ceil(tile
+				.getWidth() * scale), (int) Math.ceil(tile.getHeight() * scale), null);
+		}
+
+		/** Stretches the best cached coarser tile over the given tile. */
+		private void paintFallback(final Graphics2D graphics, final int level,
+			final int col, final int row)
+		{
+			final TiledImageView view = view();
+			final ImagePyramid pyramid = view.pyramid;
+			for (int l = level + 1; l < pyramid.getLevelCount(); l++) {
+				final int shift = l - level;
+				final BufferedImage coarse = pyramid.getTile(l, col >> shift,
+					row >> shift);
+				if (coarse == null) continue;
+				final int size = ImagePyramid.TILE_SIZE >> shift;
+				final int sx = (col - ((col >> shift) << shift)) * size;
+				final int sy = (row - ((row >> shift) << shift)) * size;
+				final int sw = Math.min(size, coarse.getWidth() - sx);
+				final int sh = Math.min(size, coarse.getHeight() - sy);
+				if (sw <= 0 || sh <= 0) return;
+				final Rectangle b = view.bounds(level, col, row);
+				final double scale = (double) b.width / size;
+				graphics.drawImage(coarse, b.x, b.y, b.x + (int) Math.ceil(sw * scale),
+					b.y + (int) Math.ceil(sh * scale), sx, sy, sx + sw, sy + sh, null);
+				return;
+			}
+		}
+
+		private void request(final int level, final int col, final int row) {
+			final TiledImageView view = view();
+			final ImagePyramid pyramid = view.pyramid;
+			pyramid.requestTile(level, col, row).thenRun(() -> ApplicationContext
+				.queueCallback(() -> {
+					// repaint the tile only if it is still relevant
+					if (view.pyramid != pyramid || view.level() != level) return;
+					final Rectangle b = view.bounds(level, col, row);
+					view.repaint(b.x, b.y, b.width, b.height);
+				}));
+		}
+	}
+
+}
@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.widget;
+
+import java.util.List;
+
+import org.scijava.Context;
+import org.scijava.module.Module;
+import org.scijava.module.ModuleItem;
+import org.scijava.widget.InputPanel;
+import org.scijava.widget.WidgetModel;
+
+/**
+ * {@link WidgetModel} which delegates to another one, so that a widget can be
+ * rebound to a different {@link Module} without being rebuilt, or recycled for
+ * a different input of a {@link PivotInputPanel}.
+ * 
+ * @author Curtis Rueden
+ * @see InputPanelCache
+ */
+class BoundWidgetModel implements WidgetModel {
+
+	private volatile WidgetModel model;
+
+	/** Choices of the model, memoized until it is rebound. */
+	private volatile String[] choices;
+
+	BoundWidgetModel(final WidgetModel model) {
+		this.model = model;
+	}
+
+	// -- BoundWidgetModel methods --
+
+	/** Rebinds this model to the given one. */
+	void rebind(final WidgetModel newModel) {
+		model = newModel;
+		choices = null;
+	}
+
+	/**
+	 * Unbinds this model, so that it no longer references a module. It must be
+	 * {@link #rebind rebound} before being used again.
+	 */
+	void unbind() {
+		rebind(null);
+	}
+
+	/**
+	 * Evaluates the parts of the model which are costly to compute, so that
+	 * building its widget does not have to.
+	 */
+	void precompute() {
+		if (isMultipleChoice()) getChoices();
+	}
+
+	// -- WidgetModel methods --
+
+	@Override
+	public InputPanel<?, ?> getPanel() {
+		return model.getPanel();
+	}
+
+	@Override
+	public Module getModule() {
+		return model.getModule();
+	}
+
+	@Override
+	public ModuleItem<?> getItem() {
+		return model.getItem();
+	}
+
+	@Override
+	public List<?> getObjectPool() {
+		return model.getObjectPool();
+	}
+
+	@Override
+	public String getWidgetLabel() {
+		return model.getWidgetLabel();
+	}
+
+	@Override
+	public boolean isStyle(final String style) {
+		return model.isStyle(style);
+	}
+
+	@Override
+	public Object getValue() {
+		return model.getValue();
+	}
+
+	@Override
+	public void setValue(final Object value) {
+		model.setValue(value);
+	}
+
+	@Override
+	public void callback() {
+		model.callback();
+	}
+
+	@Override
+	public Number getMin() {
+		return model.getMin();
+	}
+
+	@Override
+	public Number getMax() {
+		return model.getMax();
+	}
+
+	@Override
+	public Number getSoftMin() {
+		return model.getSoftMin();
+	}
+
+	@Override
+	public Number getSoftMax() {
+		return model.getSoftMax();
+	}
+
+	@Override
+	public Number getStepSize() {
+		return model.getStepSize();
+	}
+
+	@Override
+	public String[] getChoices() {
+		String[] c = choices;
+		if (c == null) choices = c = model.getChoices();
+		return c;
+	}
+
+	@Override
+	public String getText() {
+		return model.getText();
+	}
+
+	@Override
+	public boolean isMessage() {
+		return model.isMessage();
+	}
+
+	@Override
+	public boolean isText() {
+		return model.isText();
+	}
+
+	@Override
+	public boolean isCharacter() {
+		return model.isCharacter();
+	}
+
+	@Override
+	public boolean isNumber() {
+		return model.isNumber();
+	}
+
+	@Override
+	public boolean isBoolean() {
+		return model.isBoolean();
+	}
+
+	@Override
+	public boolean isMultipleChoice() {
+		return model.isMultipleChoice();
+	}
+
+	@Override
+	public boolean isType(final Class<?> type) {
+		return model.isType(type);
+	}
+
+	@Override
+	public void setInitialized(final boolean initialized) {
+		model.setInitialized(initialized);
+	}
+
+	@Override
+	public boolean isInitialized() {
+		return model.isInitialized();
+	}
+
+	// -- Contextual methods --
+
+	@Override
+	public Context context() {
+		return model.context();
+	}
+
+	@Override
+	public Context getContext() {
+		return model.getContext();
+	}
+
+	@Override
+	public void setContext(final Context context) {
+		model.setContext(context);
+	}
+
+}
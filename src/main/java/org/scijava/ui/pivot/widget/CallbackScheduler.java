@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.widget;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.wtk.ApplicationContext;
+import org.scijava.widget.WidgetModel;
+
+/**
+ * Runs the callbacks of a {@link PivotInputPanel}'s inputs off the event
+ * dispatch thread.
+ * <p>
+ * Callbacks are debounced per input: an input's callback only runs once its
+ * value has not changed for {@link #getDelay() a while}, and a newer edit
+ * cancels a callback of the same input which is still pending or running.
+ * Callbacks run one at a time, since they share the module, and mark the
+ * inputs they change dirty. Once a callback completes, and unless it has since
+ * been superseded, the panel is refreshed on the event dispatch thread to show
+ * its effects, and the module's preview is updated, as long as the panel is
+ * still shown.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class CallbackScheduler {
+
+	/** Default debounce delay, in milliseconds. */
+	public static final int DEFAULT_DELAY = 150;
+
+	private final ScheduledThreadPoolExecutor executor;
+
+	/** Latest callback of each input, keyed on input name. */
+	private final Map<String, Pending> latest = new HashMap<>();
+
+	private volatile int delay = DEFAULT_DELAY;
+
+	public CallbackScheduler(final ThreadFactory threadFactory) {
+		executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+		executor.setKeepAliveTime(1, TimeUnit.SECONDS);
+		executor.allowCoreThreadTimeOut(true);
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	// -- CallbackScheduler methods --
+
+	/** Gets the debounce delay, in milliseconds. */
+	public int getDelay() {
+		return delay;
+	}
+
+	/** Sets the debounce delay, in milliseconds. */
+	public void setDelay(final int delay) {
+		this.delay = delay;
+	}
+
+	/**
+	 * Schedules the callback of the given model's input, superseding any
+	 * callback of the same input not yet applied.
+	 */
+	public void schedule(final PivotInputPanel panel, final WidgetModel model) {
+		final Pending pending = new Pending(panel, model);
+		synchronized (this) {
+			final Pending previous = latest.put(pending.name, pending);
+			if (previous != null) previous.future.cancel(true);
+			pending.future = executor.schedule(() -> run(pending), delay,
+				TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Runs all pending callbacks now, on the calling thread, after waiting for
+	 * any running callback to complete. Call before using the module's input
+	 * values, so that no edit's callback is left out.
+	 */
+	public void flush() throws InterruptedException {
+		final List<Pending> due = new ArrayList<>();
+		synchronized (this) {
+			for (final Pending pending : latest.values()) {
+				if (pending.future.cancel(false)) due.add(pending);
+			}
+		}
+		try {
+			executor.submit(() -> {}).get();
+		}
+		catch (final ExecutionException exc) {
+			throw new IllegalStateException(exc);
+		}
+		for (final Pending pending : due) {
+			run(pending);
+		}
+	}
+
+	/** Cancels all pending and running callbacks. */
+	public synchronized void cancelAll() {
+		for (final Pending pending : latest.values()) {
+			pending.future.cancel(true);
+		}
+		latest.clear();
+	}
+
+	// -- Helper methods --
+
+	private void run(final Pending pending) {
+		if (!isLatest(pending)) return;
+		pending.panel.runCallback(pending.model.getModule(),
+			pending.model::callback);
+		if (!isLatest(pending)) return; // superseded while running
+		ApplicationContext.queueCallback(() -> {
+			synchronized (this) {
+				if (latest.get(pending.name) != pending) return;
+				latest.remove(pending.name);
+			}
+			// NB: Once its dialog is closed, the panel no longer previews.
+			if (!pending.panel.getComponent().isShowing()) return;
+			pending.panel.refresh();
+			pending.panel.preview(pending.model.getModule());
+		});
+	}
+
+	private synchronized boolean isLatest(final Pending pending) {
+		return latest.get(pending.name) == pending;
+	}
+
+	// -- Helper classes --
+
+	/** A scheduled callback. */
+	private static class Pending {
+
+		private final PivotInputPanel panel;
+		private final WidgetModel model;
+		private final String name;
+		private ScheduledFuture<?> future;
+
+		private Pending(final PivotInputPanel panel, final WidgetModel model) {
+			this.panel = panel;
+			this.model = model;
+			name = model.getItem().getName();
+		}
+	}
+
+}
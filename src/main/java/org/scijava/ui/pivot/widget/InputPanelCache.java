@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.widget;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pivot.wtk.Dialog;
+import org.scijava.module.ModuleInfo;
+import org.scijava.widget.WidgetModel;
+
+/**
+ * Bounded cache of built {@link PivotInputPanel}s, keyed on
+ * {@link ModuleInfo}, least recently used first out.
+ * <p>
+ * A cached panel is rebound to each new module instance by swapping the
+ * delegates of its widgets' {@link BoundWidgetModel}s, and then refreshed, so
+ * repeated runs of a module do not rebuild its panel and dialog. A panel is
+ * only reused if its widgets would be built the same way for the new module,
+ * i.e., if the same inputs need harvesting, with the same labels, choices
+ * and bounds. A panel in use is taken out of the cache, so concurrent runs of
+ * the same module each get their own.
+ * </p>
+ * <p>
+ * A released panel is unbound from its module, so that the cache does not
+ * keep the module, or the objects its widgets offered, from being garbage
+ * collected.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class InputPanelCache {
+
+	/** Default maximum number of cached panels. */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	private final Map<ModuleInfo, CachedPanel> entries;
+
+	private long hits, misses;
+
+	public InputPanelCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public InputPanelCache(final int capacity) {
+		entries = new LinkedHashMap<ModuleInfo, CachedPanel>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<ModuleInfo, CachedPanel> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	// -- InputPanelCache methods --
+
+	/** Gets the number of cached panels. */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** Gets the number of times a cached panel was reused. */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/** Gets the number of times a panel had to be built. */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/** Discards all cached panels. */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	// -- Internal methods --
+
+	/**
+	 * Takes the given module's panel out of the cache, if present. It should be
+	 * {@link #release released} back once no longer in use.
+	 */
+	synchronized CachedPanel acquire(final ModuleInfo info) {
+		return entries.remove(info);
+	}
+
+	/** Unbinds the given module's panel, and puts it back into the cache. */
+	void release(final ModuleInfo info, final CachedPanel entry) {
+		entry.unbind();
+		synchronized (this) {
+			entries.put(info, entry);
+		}
+	}
+
+	/** Records whether a panel was reused or built. */
+	synchronized void record(final boolean hit) {
+		if (hit) hits++;
+		else misses++;
+	}
+
+	/**
+	 * Gets the properties of a widget model which determine how its widget is
+	 * built; a widget can only be rebound to a model with equal properties.
+	 */
+	static List<Object> signature(final WidgetModel model) {
+		final List<Object> signature = new ArrayList<>();
+		signature.add(model.getItem().getName());
+		signature.add(model.getWidgetLabel());
+		signature.addAll(shape(model));
+		return signature;
+	}
+
+	/**
+	 * Gets the properties of a widget model which determine how its widget is
+	 * built, other than the input's name and label; a widget can be recycled
+	 * for another input whose model has an equal shape.
+	 */
+	static List<Object> shape(final WidgetModel model) {
+		final List<Object> shape = new ArrayList<>();
+		shape.add(model.getItem().getType());
+		shape.add(model.getItem().getWidgetStyle());
+		if (model.isNumber()) {
+			shape.add(model.getMin());
+			shape.add(model.getMax());
+			shape.add(model.getSoftMin());
+			shape.add(model.getSoftMax());
+			shape.add(model.getStepSize());
+		}
+		if (model.isMultipleChoice()) {
+			shape.add(Arrays.asList(model.getChoices()));
+		}
+		if (model.isMessage()) shape.add(model.getText());
+		// NB: Only whether there are objects to choose from determines the
+		// widget; an object widget lists the objects anew when refreshed.
+		shape.add(model.getObjectPool().isEmpty());
+		return shape;
+	}
+
+	// -- Helper classes --
+
+	/** A built panel, with what is needed to rebind it to a new module. */
+	static class CachedPanel {
+
+		final PivotInputPanel panel;
+
+		/** Names of the inputs which were to be harvested. */
+		final List<String> inputs = new ArrayList<>();
+
+		/** Models of the panel's widgets. */
+		final List<BoundWidgetModel> models = new ArrayList<>();
+
+		/** Names of the inputs of the panel's widgets. */
+		final List<String> names = new ArrayList<>();
+
+		/** Signatures of the panel's widget models, when built. */
+		final List<List<Object>> signatures = new ArrayList<>();
+
+		/** Dialog showing the panel, once it has been shown. */
+		Dialog dialog;
+
+		CachedPanel(final PivotInputPanel panel) {
+			this.panel = panel;
+		}
+
+		void add(final BoundWidgetModel model) {
+			models.add(model);
+			names.add(model.getItem().getName());
+			signatures.add(signature(model));
+		}
+
+		/** Unbinds the panel and its widgets' models from their module. */
+		void unbind() {
+			for (final BoundWidgetModel model : models) {
+				model.unbind();
+			}
+			panel.unbind();
+		}
+	}
+
+}
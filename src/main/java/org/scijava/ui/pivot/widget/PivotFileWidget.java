@@ -35,11 +35,11 @@ import java.io.File;
 import org.apache.pivot.wtk.BoxPane;
 import org.apache.pivot.wtk.Button;
 import org.apache.pivot.wtk.ButtonPressListener;
-import org.apache.pivot.wtk.FileBrowserSheet;
-import org.apache.pivot.wtk.FileBrowserSheet.Mode;
 import org.apache.pivot.wtk.PushButton;
 import org.apache.pivot.wtk.TextInput;
 import org.scijava.plugin.Plugin;
+import org.scijava.ui.pivot.PivotFileChooser;
+import org.scijava.ui.pivot.PivotUI;
 import org.scijava.widget.FileWidget;
 import org.scijava.widget.InputWidget;
 import org.scijava.widget.WidgetModel;
@@ -92,28 +92,18 @@ public class PivotFileWidget extends PivotInputWidget<File> implements
 
 	@Override
 	public void buttonPressed(final Button b) {
-		File file = new File(path.getText());
-		if (!file.isDirectory()) {
-			file = file.getParentFile();
-		}
+		final String text = path.getText();
+		final File file = text.isEmpty() ? null : new File(text);
 
 		// display file chooser in appropriate mode
 		final String style = get().getItem().getWidgetStyle();
-		final FileBrowserSheet browser;
-		if (FileWidget.SAVE_STYLE.equals(style)) {
-			browser = new FileBrowserSheet(Mode.SAVE_AS);
-		}
-		else { // default behavior
-			browser = new FileBrowserSheet(Mode.OPEN);
-		}
-		browser.setSelectedFile(file);
-		browser.open(path.getWindow());
-		final boolean success = browser.getResult();
-		if (!success) return;
-		file = browser.getSelectedFile();
-		if (file == null) return;
-
-		path.setText(file.getAbsolutePath());
+		final PivotUI ui = (PivotUI) ui();
+		final PivotFileChooser chooser =
+			new PivotFileChooser(path.getWindow(), ui.getDirectoryCache());
+		chooser.chooseFile(null, file, style).thenAccept(chosen -> {
+			// NB: The sheet completes the future on the event dispatch thread.
+			if (chosen != null) path.setText(chosen.getAbsolutePath());
+		});
 	}
 
 	// -- AbstractUIInputWidget methods ---
@@ -30,23 +30,57 @@
 
 package org.scijava.ui.pivot.widget;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.apache.pivot.wtk.ApplicationContext;
 import org.apache.pivot.wtk.BoxPane;
 import org.apache.pivot.wtk.Dialog;
+import org.apache.pivot.wtk.Orientation;
 import org.apache.pivot.wtk.TablePane;
+import org.apache.pivot.wtk.Window;
+import org.scijava.command.CommandModule;
+import org.scijava.command.Previewable;
+import org.scijava.convert.ConvertService;
+import org.scijava.log.LogService;
 import org.scijava.module.Module;
+import org.scijava.module.ModuleCanceledException;
+import org.scijava.module.ModuleException;
+import org.scijava.module.ModuleItem;
 import org.scijava.module.process.PreprocessorPlugin;
+import org.scijava.object.ObjectService;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 import org.scijava.ui.AbstractInputHarvesterPlugin;
 import org.scijava.ui.UIService;
 import org.scijava.ui.UserInterface;
 import org.scijava.ui.pivot.PivotUI;
 import org.scijava.widget.InputHarvester;
 import org.scijava.widget.InputPanel;
+import org.scijava.widget.InputWidget;
+import org.scijava.widget.WidgetModel;
+import org.scijava.widget.WidgetService;
 
 /**
  * PivotInputHarvester is an {@link InputHarvester} that collects input
  * parameter values from the user using a {@link PivotInputPanel} dialog box.
+ * <p>
+ * Built panels and their dialogs are kept in the UI's {@link InputPanelCache},
+ * and reused for later runs of the same module. Input callbacks are run off
+ * the event dispatch thread by each panel's {@link CallbackScheduler}, and
+ * previews by its {@link PreviewPipeline}; the dialog of a {@link Previewable}
+ * command shows how long its last preview took.
+ * </p>
+ * <p>
+ * Pivot dialogs do not block while open, so the dialog is opened on the event
+ * dispatch thread, and the harvesting thread waits for it to be closed. Inputs
+ * can therefore not be harvested on the event dispatch thread itself.
+ * </p>
  * 
  * @author Curtis Rueden
  * @author Barry DeZonia
@@ -59,23 +93,73 @@ public class PivotInputHarvester extends
 	@Parameter
 	private UIService uiService;
 
+	@Parameter
+	private WidgetService widgetService;
+
+	@Parameter
+	private ObjectService objectService;
+
+	@Parameter
+	private ConvertService convertService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private LogService log;
+
 	// -- InputHarvester methods --
 
+	@Override
+	public void harvest(final Module module) throws ModuleException {
+		final InputPanelCache cache = getPivotUI().getInputPanelCache();
+		final InputPanelCache.CachedPanel entry = acquire(cache, module);
+		final CallbackScheduler callbacks = entry.panel.getCallbacks();
+		final PreviewPipeline previews = entry.panel.getPreviews();
+		boolean canceled = true;
+		try {
+			if (!entry.panel.hasWidgets()) return;
+			if (!harvestInputs(entry, module)) throw new ModuleCanceledException();
+			// NB: Apply the callbacks of the last edits before using the inputs.
+			if (callbacks != null) callbacks.flush();
+			if (previews != null) previews.cancel();
+			processResults(entry.panel, module);
+			canceled = false;
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new ModuleCanceledException("Interrupted");
+		}
+		finally {
+			if (callbacks != null) callbacks.cancelAll();
+			if (canceled && entry.panel.hasWidgets()) cancel(previews, module);
+			cache.release(module.getInfo(), entry);
+		}
+	}
+
 	@Override
 	public PivotInputPanel createInputPanel() {
-		return new PivotInputPanel();
+		return new PivotInputPanel(new CallbackScheduler(threadService),
+			new PreviewPipeline(threadService, log));
 	}
 
 	@Override
 	public boolean harvestInputs(final InputPanel<TablePane, BoxPane> inputPanel,
 		final Module module)
 	{
-		final PivotUI ui = getPivotUI();
-		final String title = module.getInfo().getTitle();
-		final Dialog dialog = new Dialog(title, inputPanel.getComponent());
-		dialog.open(ui.getApplicationFrame());
-		final boolean success = dialog.getResult();
-		return success;
+		final Dialog dialog = new Dialog(inputPanel.getComponent());
+		final PreviewPipeline previews = inputPanel instanceof PivotInputPanel
+			? ((PivotInputPanel) inputPanel).getPreviews() : null;
+		try {
+			return showDialog(dialog, module, previews);
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+		catch (final ModuleException exc) {
+			if (log != null) log.error(exc);
+		}
+		return false;
 	}
 
 	// -- Internal methods --
@@ -85,6 +169,20 @@ public class PivotInputHarvester extends
 		return PivotUI.NAME;
 	}
 
+	/**
+	 * Takes the given module's panel out of the cache and rebinds it to the
+	 * module, or builds a new one if there is none which can be reused. It
+	 * should be {@link InputPanelCache#release released} once no longer in use.
+	 */
+	InputPanelCache.CachedPanel acquire(final InputPanelCache cache,
+		final Module module) throws ModuleException
+	{
+		final InputPanelCache.CachedPanel entry = cache.acquire(module.getInfo());
+		final boolean hit = entry != null && rebind(entry, module);
+		cache.record(hit);
+		return hit ? entry : build(module);
+	}
+
 	// -- Helper methods --
 
 	private PivotUI getPivotUI() {
@@ -92,4 +190,312 @@ public class PivotInputHarvester extends
 		return (PivotUI) ui;
 	}
 
+	/**
+	 * Builds a panel for the given module. Unlike
+	 * {@link #buildPanel(InputPanel, Module)}, the widgets are bound to
+	 * {@link BoundWidgetModel}s, so that the panel can later be reused, and the
+	 * widgets of modules with very many inputs are built lazily.
+	 */
+	private InputPanelCache.CachedPanel build(final Module module)
+		throws ModuleException
+	{
+		final PivotInputPanel panel = createInputPanel();
+		final InputPanelCache.CachedPanel entry =
+			new InputPanelCache.CachedPanel(panel);
+		for (final ModuleItem<?> item : module.getInfo().inputs()) {
+			if (!module.isInputResolved(item.getName())) {
+				entry.inputs.add(item.getName());
+			}
+		}
+		final boolean lazy = entry.inputs.size() >= PivotInputPanel.LAZY_THRESHOLD;
+		if (lazy) panel.setWidgetFactory(this::createWidget);
+		final List<BoundWidgetModel> models = createModels(panel, module,
+			entry.inputs);
+		for (final BoundWidgetModel model : models) {
+			final ModuleItem<?> item = model.getItem();
+			if (lazy ? addRow(panel, model) : addWidget(panel, model)) {
+				entry.add(model);
+				continue;
+			}
+			if (log != null) {
+				log.debug("No widget found for input: " + item.getName());
+			}
+			if (item.isRequired()) {
+				throw new ModuleException("A " + item.getType().getSimpleName() +
+					" input (" + item.getName() + ") is required but none exist.");
+			}
+		}
+		initialize(entry, module);
+		return entry;
+	}
+
+	/**
+	 * Rebinds a cached panel to the given module, and refreshes its widgets'
+	 * values.
+	 * 
+	 * @return false if the panel cannot be reused for the module.
+	 */
+	private boolean rebind(final InputPanelCache.CachedPanel entry,
+		final Module module)
+	{
+		final List<String> inputs = new ArrayList<>();
+		for (final ModuleItem<?> item : module.getInfo().inputs()) {
+			if (!module.isInputResolved(item.getName())) inputs.add(item.getName());
+		}
+		if (!inputs.equals(entry.inputs)) return false;
+
+		final List<BoundWidgetModel> models;
+		try {
+			models = createModels(entry.panel, module, entry.names);
+		}
+		catch (final ModuleException exc) {
+			if (log != null) log.debug(exc);
+			return false;
+		}
+		for (int i = 0; i < models.size(); i++) {
+			final List<Object> signature = InputPanelCache.signature(models.get(i));
+			if (!signature.equals(entry.signatures.get(i))) return false;
+		}
+		for (int i = 0; i < models.size(); i++) {
+			entry.models.get(i).rebind(models.get(i));
+		}
+		entry.panel.refresh();
+		initialize(entry, module);
+		return true;
+	}
+
+	/** Adds a lazily built row for the model, if a widget supports it. */
+	private boolean addRow(final PivotInputPanel panel,
+		final WidgetModel model)
+	{
+		if (!widgetService.supports(model)) return false;
+		panel.addRow(model);
+		return true;
+	}
+
+	/** Adds a widget for the model, if one supports it. */
+	private boolean addWidget(final PivotInputPanel panel,
+		final WidgetModel model)
+	{
+		final InputWidget<?, BoxPane> widget = createWidget(model);
+		if (widget == null) return false;
+		panel.addWidget(widget);
+		return true;
+	}
+
+	/**
+	 * Creates a widget for the given model.
+	 * 
+	 * @return the widget, or null if no Pivot widget suits the model.
+	 */
+	private InputWidget<?, BoxPane> createWidget(final WidgetModel model) {
+		final InputWidget<?, ?> widget = widgetService.create(model);
+		if (widget == null || widget.getComponentType() != BoxPane.class) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		final InputWidget<?, BoxPane> typedWidget =
+			(InputWidget<?, BoxPane>) widget;
+		return typedWidget;
+	}
+
+	/**
+	 * Creates the widget models of the given inputs. Their object pools, which
+	 * may query services over large collections, and their choices are
+	 * computed in parallel; only creating the models themselves, which may
+	 * assign default values to the module, is serial.
+	 */
+	private List<BoundWidgetModel> createModels(final PivotInputPanel panel,
+		final Module module, final List<String> names) throws ModuleException
+	{
+		final List<ModuleItem<?>> items = new ArrayList<>(names.size());
+		for (final String name : names) {
+			items.add(module.getInfo().getInput(name));
+		}
+		final List<List<Object>> pools = parallel(items, item -> objects(item
+			.getType()));
+		final List<BoundWidgetModel> models = new ArrayList<>(items.size());
+		for (int i = 0; i < items.size(); i++) {
+			models.add(new BoundWidgetModel(new ScheduledWidgetModel(getContext(),
+				panel, module, items.get(i), pools.get(i))));
+		}
+		parallel(models, model -> {
+			model.precompute();
+			return null;
+		});
+		return models;
+	}
+
+	/** Gets the objects which an input of the given type may take. */
+	private List<Object> objects(final Class<?> type) {
+		final List<Object> objects = new ArrayList<>(convertService
+			.getCompatibleInputs(type));
+		objects.addAll(objectService.getObjects(type));
+		return objects;
+	}
+
+	/**
+	 * Applies the function to each element, in parallel chunks of elements.
+	 * 
+	 * @return the results, in the order of the elements.
+	 */
+	private <T, R> List<R> parallel(final List<T> elements,
+		final Function<T, R> function) throws ModuleException
+	{
+		final int size = elements.size();
+		final int chunks = Math.min(size, Runtime.getRuntime()
+			.availableProcessors());
+		final List<Future<List<R>>> futures = new ArrayList<>(chunks);
+		for (int c = 0; c < chunks; c++) {
+			final List<T> chunk = elements.subList(c * size / chunks, (c + 1) *
+				size / chunks);
+			futures.add(threadService.run(() -> {
+				final List<R> results = new ArrayList<>(chunk.size());
+				for (final T element : chunk) {
+					results.add(function.apply(element));
+				}
+				return results;
+			}));
+		}
+		final List<R> results = new ArrayList<>(size);
+		try {
+			for (final Future<List<R>> future : futures) {
+				results.addAll(future.get());
+			}
+		}
+		catch (final InterruptedException exc) {
+			for (final Future<List<R>> future : futures) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new ModuleCanceledException("Interrupted");
+		}
+		catch (final ExecutionException exc) {
+			throw new ModuleException(exc.getCause());
+		}
+		return results;
+	}
+
+	/** Marks the panel's models as initialized, and requests the preview. */
+	private void initialize(final InputPanelCache.CachedPanel entry,
+		final Module module)
+	{
+		for (final WidgetModel model : entry.models) {
+			model.setInitialized(true);
+		}
+		entry.panel.preview(module);
+	}
+
+	private boolean harvestInputs(final InputPanelCache.CachedPanel entry,
+		final Module module) throws ModuleException, InterruptedException
+	{
+		if (entry.dialog == null) {
+			final PreviewPipeline previews = entry.panel.getPreviews();
+			if (previews == null) entry.dialog = new Dialog(entry.panel
+				.getComponent());
+			else {
+				final BoxPane content = new BoxPane(Orientation.VERTICAL);
+				content.add(entry.panel.getComponent());
+				content.add(previews.getStatusLabel());
+				entry.dialog = new Dialog(content);
+			}
+		}
+		final PreviewPipeline previews = entry.panel.getPreviews();
+		if (previews != null) {
+			previews.getStatusLabel().setVisible(isPreviewable(module));
+		}
+		return showDialog(entry.dialog, module, previews);
+	}
+
+	/**
+	 * Waits for the preview of a module whose dialog was canceled to stop, and
+	 * has the module revert it. The preview was already told to stop when the
+	 * dialog closed.
+	 */
+	private void cancel(final PreviewPipeline previews, final Module module) {
+		if (previews != null) {
+			try {
+				previews.cancel();
+			}
+			catch (final InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		module.cancel();
+	}
+
+	private boolean isPreviewable(final Module module) {
+		return module instanceof CommandModule &&
+			((CommandModule) module).getCommand() instanceof Previewable;
+	}
+
+	/**
+	 * Opens the dialog on the event dispatch thread, and waits for it to be
+	 * closed. Previewing stops as soon as the dialog closes, on the event
+	 * dispatch thread, rather than when the waiting thread wakes up. If
+	 * interrupted, closes the dialog before returning, so that its panel is
+	 * never released while still shown.
+	 * 
+	 * @return Whether the dialog was closed with OK.
+	 * @throws ModuleException if called on the event dispatch thread, where
+	 *           waiting would deadlock, or if the dialog could not be opened.
+	 */
+	private boolean showDialog(final Dialog dialog, final Module module,
+		final PreviewPipeline previews) throws ModuleException,
+		InterruptedException
+	{
+		if (threadService.isDispatchThread()) {
+			throw new ModuleException(
+				"Inputs cannot be harvested on the event dispatch thread");
+		}
+		final Window owner = getPivotUI().getApplicationFrame();
+		final CompletableFuture<Boolean> closed = new CompletableFuture<>();
+		ApplicationContext.queueCallback(() -> {
+			dialog.setTitle(module.getInfo().getTitle());
+			try {
+				dialog.open(owner, (d, modal) -> {
+					if (previews != null) previews.stop();
+					closed.complete(d.getResult());
+				});
+			}
+			catch (final RuntimeException exc) {
+				// NB: E.g., the owner is not open. Do not leave the caller waiting.
+				closed.completeExceptionally(exc);
+			}
+		});
+		try {
+			return closed.get();
+		}
+		catch (final InterruptedException exc) {
+			// NB: The dialog is opened before this close is run, if at all.
+			ApplicationContext.queueCallback(() -> {
+				if (dialog.isOpen()) dialog.close(false);
+				else closed.complete(false);
+			});
+			awaitUninterruptibly(closed);
+			throw exc;
+		}
+		catch (final ExecutionException exc) {
+			throw new ModuleException(exc.getCause());
+		}
+	}
+
+	/** Waits for the future to complete, even if interrupted meanwhile. */
+	private static void awaitUninterruptibly(final Future<?> future) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				future.get();
+				break;
+			}
+			catch (final InterruptedException exc) {
+				interrupted = true;
+			}
+			catch (final ExecutionException exc) {
+				break;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
 }
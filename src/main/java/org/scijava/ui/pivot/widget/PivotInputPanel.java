@@ -30,9 +30,31 @@
 
 package org.scijava.ui.pivot.widget;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.pivot.wtk.ApplicationContext;
 import org.apache.pivot.wtk.BoxPane;
+import org.apache.pivot.wtk.Component;
+import org.apache.pivot.wtk.ComponentListener;
 import org.apache.pivot.wtk.Label;
+import org.apache.pivot.wtk.Orientation;
+import org.apache.pivot.wtk.ScrollPane;
+import org.apache.pivot.wtk.ScrollPane.ScrollBarPolicy;
 import org.apache.pivot.wtk.TablePane;
+import org.apache.pivot.wtk.Viewport;
+import org.apache.pivot.wtk.ViewportListener;
+import org.scijava.module.Module;
 import org.scijava.widget.AbstractInputPanel;
 import org.scijava.widget.InputPanel;
 import org.scijava.widget.InputWidget;
@@ -40,13 +62,194 @@ import org.scijava.widget.WidgetModel;
 
 /**
  * Pivot implementation of {@link InputPanel}.
+ * <p>
+ * A {@link #refresh()} only refreshes the widgets which were
+ * {@link #markDirty marked dirty}, without reading the other inputs. Inputs
+ * changed by a callback are marked dirty by {@link #runCallback}, through
+ * which the panel's callbacks are run; an edit made through a widget is
+ * already shown by that widget, unless its value was converted.
+ * </p>
+ * <p>
+ * If the panel has a {@link CallbackScheduler}, the callbacks of edited inputs
+ * are debounced and run in the background, rather than on the event dispatch
+ * thread with every edit. Likewise, if the panel has a
+ * {@link PreviewPipeline}, the module's preview is computed in the background.
+ * </p>
+ * <p>
+ * Besides widgets added up front, the panel can hold {@link #addRow rows}
+ * whose widgets are only built once scrolled into view, for modules with very
+ * many inputs. Such rows are laid out in a scroll pane, grouped by the
+ * {@code section} property of their inputs; rows scrolled far out of view
+ * give up their widgets, which are recycled for rows of the same shape.
+ * </p>
  * 
  * @author Curtis Rueden
  */
 public class PivotInputPanel extends AbstractInputPanel<TablePane, BoxPane> {
 
+	/** Number of inputs from which a module's rows should be built lazily. */
+	public static final int LAZY_THRESHOLD = 64;
+
+	/** Estimated height of a row, in pixels, until its widget is built. */
+	private static final int ROW_HEIGHT = 20;
+
+	/** Preferred height of the scroll pane holding the lazily built rows. */
+	private static final int VIEW_HEIGHT = 480;
+
 	private TablePane uiComponent;
 
+	/** Runs input callbacks off the EDT, or null to run them on the EDT. */
+	private final CallbackScheduler callbacks;
+
+	/** Computes previews off the EDT, or null to compute them in place. */
+	private final PreviewPipeline previews;
+
+	/** Inputs whose widgets need refreshing, keyed on input name. */
+	private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+	/** Rows whose widgets are built lazily, keyed on input name. */
+	private final Map<String, Row> rows = new LinkedHashMap<>();
+
+	/** Tables holding the rows of each section, keyed on section name. */
+	private final Map<String, TablePane> sections = new HashMap<>();
+
+	/** Widgets given up by rows, keyed on the shape of their models. */
+	private final Map<List<Object>, Deque<InputWidget<?, BoxPane>>> recycled =
+		new HashMap<>();
+
+	private Function<WidgetModel, InputWidget<?, BoxPane>> widgetFactory;
+	private ScrollPane scrollPane;
+	private BoxPane view;
+	private int estimatedHeight;
+	private boolean layoutQueued;
+	private int builtCount;
+	private int recycledCount;
+
+	/** Number of rows which currently have a widget. */
+	private int shownRows;
+
+	private final AtomicLong refreshCount = new AtomicLong();
+	private final AtomicLong touchedCount = new AtomicLong();
+	private final AtomicLong skippedCount = new AtomicLong();
+	private volatile int lastTouched;
+
+	public PivotInputPanel() {
+		this(null, null);
+	}
+
+	public PivotInputPanel(final CallbackScheduler callbacks,
+		final PreviewPipeline previews)
+	{
+		this.callbacks = callbacks;
+		this.previews = previews;
+	}
+
+	// -- PivotInputPanel methods --
+
+	/**
+	 * Gets the scheduler which runs input callbacks off the event dispatch
+	 * thread, or null if callbacks run on the event dispatch thread.
+	 */
+	public CallbackScheduler getCallbacks() {
+		return callbacks;
+	}
+
+	/**
+	 * Gets the pipeline which computes module previews off the event dispatch
+	 * thread, or null if previews are computed in place.
+	 */
+	public PreviewPipeline getPreviews() {
+		return previews;
+	}
+
+	/**
+	 * Runs the given callback of the module's inputs, marking the inputs whose
+	 * values it changes dirty. May be called off the event dispatch thread.
+	 */
+	public void runCallback(final Module module, final Runnable callback) {
+		final Map<String, Object> before = module.getInputs();
+		callback.run();
+		for (final Entry<String, Object> input : module.getInputs().entrySet()) {
+			final String name = input.getKey();
+			if (!Objects.equals(input.getValue(), before.get(name))) {
+				markDirty(name);
+			}
+		}
+	}
+
+	/** Updates the preview of the given module, after its inputs changed. */
+	public void preview(final Module module) {
+		if (previews == null) module.preview();
+		else previews.request(module);
+	}
+
+	/**
+	 * Sets the factory which builds the widgets of {@link #addRow rows}. The
+	 * factory may return null if no widget suits a model.
+	 */
+	public void setWidgetFactory(
+		final Function<WidgetModel, InputWidget<?, BoxPane>> widgetFactory)
+	{
+		this.widgetFactory = widgetFactory;
+	}
+
+	/**
+	 * Adds a row for the given model, whose widget is built by the
+	 * {@link #setWidgetFactory widget factory} once the row is scrolled into
+	 * view. The rows of the first screen are built right away.
+	 */
+	public void addRow(final WidgetModel model) {
+		final Row row = new Row(model);
+		rows.put(model.getItem().getName(), row);
+		final TablePane.Row tableRow = new TablePane.Row();
+		tableRow.add(row.label);
+		tableRow.add(row.slot);
+		section(model.getItem().get("section")).getRows().add(tableRow);
+		if (estimatedHeight < VIEW_HEIGHT) build(row);
+		estimatedHeight += ROW_HEIGHT;
+	}
+
+	/** Gets the number of widgets built for rows. */
+	public int getBuiltCount() {
+		return builtCount;
+	}
+
+	/** Gets the number of times a row's widget was recycled for another row. */
+	public int getRecycledCount() {
+		return recycledCount;
+	}
+
+	/** Marks the given input's widget for refreshing by the next refresh. */
+	public void markDirty(final String name) {
+		dirty.add(name);
+	}
+
+	/** Marks all widgets for refreshing by the next refresh. */
+	public void markAllDirty() {
+		dirty.addAll(widgets.keySet());
+		dirty.addAll(rows.keySet());
+	}
+
+	/** Gets the number of times the panel has been refreshed. */
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+
+	/** Gets the total number of widgets refreshed by all refreshes. */
+	public long getTouchedCount() {
+		return touchedCount.get();
+	}
+
+	/** Gets the total number of widgets skipped by all refreshes. */
+	public long getSkippedCount() {
+		return skippedCount.get();
+	}
+
+	/** Gets the number of widgets refreshed by the last refresh. */
+	public int getLastTouchedCount() {
+		return lastTouched;
+	}
+
 	// -- InputPanel methods --
 
 	@Override
@@ -64,6 +267,57 @@ public class PivotInputPanel extends AbstractInputPanel<TablePane, BoxPane> {
 		getComponent().getRows().add(row);
 	}
 
+	@Override
+	public InputWidget<?, BoxPane> getWidget(final String name) {
+		final Row row = rows.get(name);
+		return row == null ? super.getWidget(name) : row.widget;
+	}
+
+	@Override
+	public Object getValue(final String name) {
+		final Row row = rows.get(name);
+		return row == null ? super.getValue(name) : row.model.getValue();
+	}
+
+	@Override
+	public int getWidgetCount() {
+		return widgets.size() + rows.size();
+	}
+
+	@Override
+	public boolean hasWidgets() {
+		return getWidgetCount() > 0;
+	}
+
+	@Override
+	public boolean isMessageOnly() {
+		int messageCount = 0;
+		for (final InputWidget<?, BoxPane> widget : widgets.values()) {
+			if (widget.isMessage()) messageCount++;
+		}
+		for (final Row row : rows.values()) {
+			if (row.model.isMessage()) messageCount++;
+		}
+		return messageCount == getWidgetCount();
+	}
+
+	@Override
+	public void refresh() {
+		int touched = 0;
+		for (final String name : dirty) {
+			// NB: An input marked dirty again while refreshing stays dirty.
+			if (!dirty.remove(name)) continue;
+			final InputWidget<?, BoxPane> widget = getWidget(name);
+			if (widget == null) continue; // unknown, or refreshed once built
+			widget.refreshWidget();
+			touched++;
+		}
+		refreshCount.incrementAndGet();
+		touchedCount.addAndGet(touched);
+		skippedCount.addAndGet(widgets.size() + shownRows - touched);
+		lastTouched = touched;
+	}
+
 	@Override
 	public Class<BoxPane> getWidgetComponentType() {
 		return BoxPane.class;
@@ -90,4 +344,176 @@ public class PivotInputPanel extends AbstractInputPanel<TablePane, BoxPane> {
 		return TablePane.class;
 	}
 
+	// -- Internal methods --
+
+	/**
+	 * Forgets the objects listed by object widgets, once the widgets' models
+	 * have been unbound from their module. All widgets are refreshed by the
+	 * next refresh, to show the values of the module they are bound to next.
+	 */
+	void unbind() {
+		markAllDirty();
+		for (final InputWidget<?, BoxPane> widget : widgets.values()) {
+			clearObjects(widget);
+		}
+		for (final Row row : rows.values()) {
+			if (row.widget != null) clearObjects(row.widget);
+		}
+		for (final Deque<InputWidget<?, BoxPane>> free : recycled.values()) {
+			for (final InputWidget<?, BoxPane> widget : free) {
+				clearObjects(widget);
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the table holding the rows of the given section. */
+	private TablePane section(final String name) {
+		final String key = name == null ? "" : name;
+		TablePane table = sections.get(key);
+		if (table == null) {
+			if (!key.isEmpty()) {
+				final Label header = new Label(key);
+				header.getStyles().put("font", "{bold:true}");
+				view().add(header);
+			}
+			table = new TablePane();
+			final TablePane.Column labelColumn = new TablePane.Column();
+			labelColumn.setWidth("-1");
+			table.getColumns().add(labelColumn);
+			final TablePane.Column widgetColumn = new TablePane.Column();
+			widgetColumn.setWidth("1*");
+			table.getColumns().add(widgetColumn);
+			view().add(table);
+			sections.put(key, table);
+		}
+		return table;
+	}
+
+	/** Gets the scrolled container of the sections, creating it if needed. */
+	private BoxPane view() {
+		if (view == null) {
+			view = new BoxPane(Orientation.VERTICAL);
+			view.getStyles().put("fill", true);
+			scrollPane = new ScrollPane(ScrollBarPolicy.FILL, ScrollBarPolicy.AUTO);
+			scrollPane.setView(view);
+			scrollPane.setPreferredHeight(VIEW_HEIGHT);
+			scrollPane.getViewportListeners().add(new ViewportListener.Adapter() {
+
+				@Override
+				public void scrollTopChanged(final Viewport viewport,
+					final int previousScrollTop)
+				{
+					queueLayout();
+				}
+			});
+			scrollPane.getComponentListeners().add(new ComponentListener.Adapter() {
+
+				@Override
+				public void sizeChanged(final Component component,
+					final int previousWidth, final int previousHeight)
+				{
+					queueLayout();
+				}
+			});
+			final TablePane.Row row = new TablePane.Row();
+			row.add(scrollPane);
+			TablePane.setColumnSpan(scrollPane, 2);
+			getComponent().getRows().add(row);
+		}
+		return view;
+	}
+
+	/** Queues an update of which rows have widgets, on the EDT. */
+	private void queueLayout() {
+		if (layoutQueued) return;
+		layoutQueued = true;
+		ApplicationContext.queueCallback(this::layoutRows);
+	}
+
+	/**
+	 * Builds the widgets of the rows within a screen of the visible ones, and
+	 * recycles those of the rows beyond.
+	 */
+	private void layoutRows() {
+		layoutQueued = false;
+		if (scrollPane.getDisplay() == null) return; // not shown, maybe unbound
+		final int height = scrollPane.getHeight();
+		if (height == 0) return;
+		final int top = scrollPane.getScrollTop() - height;
+		final int bottom = scrollPane.getScrollTop() + 2 * height;
+		final Deque<Row> visible = new ArrayDeque<>();
+		for (final Row row : rows.values()) {
+			final int y = row.slot.mapPointToAncestor(view, 0, 0).y;
+			final boolean near = y + row.slot.getHeight() >= top && y <= bottom;
+			if (near && row.widget == null) visible.add(row);
+			else if (!near && row.widget != null) recycle(row);
+		}
+		for (final Row row : visible) {
+			build(row);
+		}
+	}
+
+	/** Gives the row a widget, recycled if one of the same shape is free. */
+	private void build(final Row row) {
+		final Deque<InputWidget<?, BoxPane>> free = recycled.get(row.shape);
+		InputWidget<?, BoxPane> widget = free == null ? null : free.poll();
+		if (widget != null) {
+			((BoundWidgetModel) widget.get()).rebind(row.model);
+			widget.refreshWidget();
+			recycledCount++;
+		}
+		else {
+			if (widgetFactory == null) return;
+			widget = widgetFactory.apply(new BoundWidgetModel(row.model));
+			if (widget == null) return;
+			builtCount++;
+		}
+		row.label.setVisible(widget.isLabeled());
+		row.slot.setPreferredHeight(-1);
+		row.slot.add(widget.getComponent());
+		row.widget = widget;
+		shownRows++;
+		// NB: A built or recycled widget shows the current value of its input.
+		dirty.remove(row.model.getItem().getName());
+	}
+
+	/** Takes the row's widget away, keeping it for another row. */
+	private void recycle(final Row row) {
+		final InputWidget<?, BoxPane> widget = row.widget;
+		row.widget = null;
+		shownRows--;
+		// NB: Keep the row's height, so that the rows below do not move.
+		row.slot.setPreferredHeight(row.slot.getHeight());
+		row.slot.remove(widget.getComponent());
+		recycled.computeIfAbsent(row.shape, shape -> new ArrayDeque<>()).add(
+			widget);
+	}
+
+	private static void clearObjects(final InputWidget<?, ?> widget) {
+		if (widget instanceof PivotObjectWidget) {
+			((PivotObjectWidget) widget).clearObjects();
+		}
+	}
+
+	// -- Helper classes --
+
+	/** A row whose widget is built lazily. */
+	private static class Row {
+
+		private final WidgetModel model;
+		private final List<Object> shape;
+		private final Label label;
+		private final BoxPane slot = new BoxPane();
+		private volatile InputWidget<?, BoxPane> widget;
+
+		private Row(final WidgetModel model) {
+			this.model = model;
+			shape = InputPanelCache.shape(model);
+			label = new Label(model.getWidgetLabel());
+			slot.setPreferredHeight(ROW_HEIGHT);
+		}
+	}
+
 }
@@ -30,6 +30,8 @@
 
 package org.scijava.ui.pivot.widget;
 
+import java.util.Collection;
+
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.wtk.BoxPane;
@@ -51,6 +53,9 @@ public class PivotObjectWidget extends PivotInputWidget<Object> implements
 
 	private ListButton listButton;
 
+	/** Object pool currently listed by the list button. */
+	private Collection<?> pool;
+
 	// -- InputWidget methods --
 
 	@Override
@@ -65,14 +70,25 @@ public class PivotObjectWidget extends PivotInputWidget<Object> implements
 		super.set(model);
 
 		listButton = new ListButton();
-		final Object[] items = model.getObjectPool().toArray();
-		final List<Object> listData = new ArrayList<>(items);
-		listButton.setListData(listData);
+		list(model.getObjectPool());
 		getComponent().add(listButton);
 
 		refreshWidget();
 	}
 
+	// -- PivotObjectWidget methods --
+
+	/**
+	 * Empties the list of objects, so that the widget no longer references
+	 * them; it is listed again by the next refresh.
+	 */
+	public void clearObjects() {
+		pool = null;
+		listButton.setListData(new ArrayList<>());
+		// NB: The button shows the selected item as its data.
+		listButton.setButtonData(null);
+	}
+
 	// -- Typed methods --
 
 	@Override
@@ -84,9 +100,20 @@ public class PivotObjectWidget extends PivotInputWidget<Object> implements
 
 	@Override
 	public void doRefresh() {
+		// NB: The model may have been rebound to a module with another pool.
+		final Collection<?> objectPool = get().getObjectPool();
+		if (objectPool != pool) list(objectPool);
 		final Object value = get().getValue();
 		if (value == listButton.getSelectedItem()) return; // no change
 		listButton.setSelectedItem(value);
 	}
 
+	// -- Helper methods --
+
+	private void list(final Collection<?> objectPool) {
+		pool = objectPool;
+		final List<Object> listData = new ArrayList<>(objectPool.toArray());
+		listButton.setListData(listData);
+	}
+
 }
@@ -0,0 +1,193 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.widget;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.pivot.wtk.ApplicationContext;
+import org.apache.pivot.wtk.Label;
+import org.scijava.log.LogService;
+import org.scijava.module.Module;
+
+/**
+ * Computes module previews on a worker thread, so that the input dialog stays
+ * responsive while a preview is slow.
+ * <p>
+ * At most one preview is in flight at a time, and at most one is queued after
+ * it. A newer request replaces the queued one, and interrupts the preview in
+ * flight, since its result is already stale. The duration of the last preview,
+ * or the error it failed with, is shown by the {@link #getStatusLabel() status
+ * label}.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+public class PreviewPipeline {
+
+	private final ThreadFactory threadFactory;
+	private final LogService log;
+
+	private final Label statusLabel = new Label();
+
+	/** The thread computing a preview, or null if none is in flight. */
+	private Thread worker;
+
+	/** The module to preview once the one in flight is done. */
+	private Module queued;
+
+	private long lastDuration = -1;
+
+	public PreviewPipeline(final ThreadFactory threadFactory) {
+		this(threadFactory, null);
+	}
+
+	public PreviewPipeline(final ThreadFactory threadFactory,
+		final LogService log)
+	{
+		this.threadFactory = threadFactory;
+		this.log = log;
+	}
+
+	// -- PreviewPipeline methods --
+
+	/** Gets the label which shows the pipeline's status. */
+	public Label getStatusLabel() {
+		return statusLabel;
+	}
+
+	/**
+	 * Gets the duration of the last completed preview in milliseconds, or -1 if
+	 * none has completed yet.
+	 */
+	public synchronized long getLastDuration() {
+		return lastDuration;
+	}
+
+	/** Gets whether a preview is in flight or queued. */
+	public synchronized boolean isBusy() {
+		return worker != null;
+	}
+
+	/** Requests a preview of the given module. */
+	public synchronized void request(final Module module) {
+		if (worker == null) {
+			start(module);
+			return;
+		}
+		queued = module;
+		worker.interrupt();
+	}
+
+	/**
+	 * Drops the queued preview and interrupts the one in flight, without
+	 * waiting for it to stop. Safe to call on the event dispatch thread.
+	 */
+	public synchronized void stop() {
+		queued = null;
+		if (worker != null) worker.interrupt();
+	}
+
+	/**
+	 * Drops the queued preview, interrupts the one in flight, and waits for it
+	 * to stop.
+	 */
+	public synchronized void cancel() throws InterruptedException {
+		stop();
+		while (worker != null) {
+			wait();
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Starts a worker for the given module. Must hold the lock. */
+	private void start(final Module module) {
+		status("Previewing...");
+		worker = threadFactory.newThread(() -> run(module));
+		worker.start();
+	}
+
+	private void run(Module module) {
+		try {
+			while (module != null) {
+				final long start = System.nanoTime();
+				RuntimeException error = null;
+				try {
+					module.preview();
+				}
+				catch (final RuntimeException exc) {
+					error = exc;
+				}
+				final long duration = (System.nanoTime() - start) / 1000000;
+				synchronized (this) {
+					// NB: Clear an interrupt meant for the preview just completed.
+					Thread.interrupted();
+					// NB: A superseded preview's result, or failure, is stale.
+					if (queued == null) {
+						if (error == null) {
+							lastDuration = duration;
+							status("Preview: " + duration + " ms");
+						}
+						else failed(error);
+					}
+					module = queued;
+					queued = null;
+					if (module == null) {
+						worker = null;
+						notifyAll();
+					}
+				}
+			}
+		}
+		finally {
+			// NB: Never leave cancel() waiting on a worker which died.
+			synchronized (this) {
+				if (worker == Thread.currentThread()) {
+					worker = null;
+					queued = null;
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	private void failed(final RuntimeException exc) {
+		if (log != null) log.error("Preview failed", exc);
+		final String message = exc.getMessage();
+		status("Preview failed: " + (message == null ? exc.getClass()
+			.getSimpleName() : message));
+	}
+
+	private void status(final String text) {
+		ApplicationContext.queueCallback(() -> statusLabel.setText(text));
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.widget;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.scijava.Context;
+import org.scijava.convert.ConvertService;
+import org.scijava.module.Module;
+import org.scijava.module.ModuleItem;
+import org.scijava.plugin.Parameter;
+import org.scijava.widget.DefaultWidgetModel;
+import org.scijava.widget.InputPanel;
+import org.scijava.widget.WidgetModel;
+
+/**
+ * {@link WidgetModel} whose callback is run by its {@link PivotInputPanel}'s
+ * {@link CallbackScheduler}, off the event dispatch thread, when the value of
+ * its input is changed. Unlike a {@link DefaultWidgetModel}, it does not queue
+ * the callback on the event dispatch thread itself.
+ * <p>
+ * Either way, the inputs changed by the callback are marked dirty, so that the
+ * panel refreshes their widgets; so is the edited input, if its value was
+ * converted to something other than what its widget shows.
+ * </p>
+ * 
+ * @author Curtis Rueden
+ */
+class ScheduledWidgetModel extends DefaultWidgetModel {
+
+	@Parameter
+	private ConvertService convertService;
+
+	ScheduledWidgetModel(final Context context, final InputPanel<?, ?> panel,
+		final Module module, final ModuleItem<?> item, final List<?> objectPool)
+	{
+		super(context, panel, module, item, objectPool);
+	}
+
+	// -- WidgetModel methods --
+
+	@Override
+	public void setValue(final Object value) {
+		final PivotInputPanel panel = pivotPanel();
+		final CallbackScheduler callbacks = isInitialized() && panel != null
+			? panel.getCallbacks() : null;
+		final ModuleItem<?> item = getItem();
+		final Module module = getModule();
+		if (callbacks == null) super.setValue(value);
+		else {
+			final Object oldValue = item.getValue(module);
+			if (Objects.equals(oldValue, value)) return; // no change
+			final Object newValue = convertService.convert(value, item.getType());
+			module.setInput(item.getName(), newValue);
+			if (!Objects.equals(oldValue, newValue)) {
+				callbacks.schedule(panel, this);
+			}
+		}
+		if (panel != null && !Objects.equals(item.getValue(module), value)) {
+			panel.markDirty(item.getName());
+		}
+	}
+
+	@Override
+	public void callback() {
+		final PivotInputPanel panel = pivotPanel();
+		// NB: Without a scheduler, the callback is queued by DefaultWidgetModel,
+		// which then refreshes the panel; a scheduler tracks changes itself.
+		if (panel == null || panel.getCallbacks() != null) super.callback();
+		else panel.runCallback(getModule(), super::callback);
+	}
+
+	// -- Helper methods --
+
+	private PivotInputPanel pivotPanel() {
+		final InputPanel<?, ?> panel = getPanel();
+		return panel instanceof PivotInputPanel ? (PivotInputPanel) panel : null;
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.ui.pivot.DirectoryListingCache.Listing;
+
+/**
+ * Tests {@link DirectoryListingCache}.
+ * 
+ * @author Curtis Rueden
+ */
+public class DirectoryListingCacheTest {
+
+	/** How long to wait for the watcher to notice a change, in milliseconds. */
+	private static final long TIMEOUT = 10000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DirectoryListingCache cache;
+
+	@Before
+	public void setUp() {
+		// NB: Read listings synchronously, so that tests are deterministic.
+		cache = new DirectoryListingCache(2, Runnable::run, Executors
+			.defaultThreadFactory(), null);
+	}
+
+	@After
+	public void tearDown() {
+		cache.dispose();
+	}
+
+	@Test
+	public void testListing() throws IOException {
+		folder.newFile("b.txt");
+		folder.newFolder("Z");
+		folder.newFile("A.txt");
+		folder.newFolder("y");
+		final Listing listing = cache.list(folder.getRoot()).join();
+		assertEquals(Arrays.asList("y", "Z", "A.txt", "b.txt"), names(listing));
+		assertTrue(listing.isDirectory(new File(folder.getRoot(), "Z")));
+		assertFalse(listing.isDirectory(new File(folder.getRoot(), "b.txt")));
+		assertTrue(listing.contains(new File(folder.getRoot(), "A.txt")));
+		assertFalse(listing.contains(new File(folder.getRoot(), "c.txt")));
+	}
+
+	@Test
+	public void testCached() throws IOException {
+		final File dir = folder.getRoot();
+		assertNull(cache.getIfPresent(dir));
+		final CompletableFuture<Listing> listing = cache.list(dir);
+		assertSame(listing, cache.list(dir));
+		assertSame(listing.join(), cache.getIfPresent(dir));
+	}
+
+	@Test
+	public void testInvalidate() throws IOException {
+		final File dir = folder.getRoot();
+		folder.newFile("a.txt");
+		final Listing before = cache.list(dir).join();
+		cache.invalidate(dir);
+		assertNull(cache.getIfPresent(dir));
+		folder.newFile("b.txt");
+		final Listing after = cache.list(dir).join();
+		assertNotSame(before, after);
+		assertEquals(Arrays.asList("a.txt", "b.txt"), names(after));
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		final File a = folder.newFolder("a");
+		final File b = folder.newFolder("b");
+		final File c = folder.newFolder("c");
+		cache.list(a).join();
+		cache.list(b).join();
+		cache.list(a).join(); // a is now more recently used than b
+		cache.list(c).join();
+		assertTrue(cache.getIfPresent(a) != null);
+		assertNull(cache.getIfPresent(b));
+		assertTrue(cache.getIfPresent(c) != null);
+	}
+
+	@Test
+	public void testReloadOnChange() throws Exception {
+		final File dir = folder.getRoot();
+		final Listing before = cache.list(dir).join();
+		assertTrue(before.getFiles().isEmpty());
+		final File file = folder.newFile("new.txt");
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (!cache.getIfPresent(dir).contains(file)) {
+			assertTrue("Listing was not reloaded", System
+				.currentTimeMillis() < deadline);
+			Thread.sleep(20);
+		}
+		// NB: The earlier snapshot is left as it was.
+		assertTrue(before.getFiles().isEmpty());
+	}
+
+	@Test
+	public void testMissingDirectory() throws IOException {
+		final File missing = new File(folder.getRoot(), "missing");
+		assertTrue(cache.list(missing).isCompletedExceptionally());
+		assertNull(cache.getIfPresent(missing));
+		// NB: A failed listing is not cached.
+		assertTrue(missing.mkdir());
+		assertTrue(cache.list(missing).join().getFiles().isEmpty());
+	}
+
+	@Test
+	public void testPrefetch() throws IOException {
+		final File file = folder.newFile("a.txt");
+		assertEquals(folder.getRoot(), cache.prefetch(file).join());
+		assertTrue(cache.getIfPresent(folder.getRoot()).contains(file));
+		assertNull(cache.prefetch(new File(folder.getRoot(), "x/y.txt")).join());
+	}
+
+	// -- Helper methods --
+
+	private static List<String> names(final Listing listing) {
+		final List<String> names = new ArrayList<>();
+		for (final File file : listing.getFiles()) {
+			names.add(file.getName());
+		}
+		return names;
+	}
+
+}
@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import org.scijava.ui.DialogPrompt.MessageType;
+import org.scijava.ui.DialogPrompt.OptionType;
+import org.scijava.ui.DialogPrompt.Result;
+
+/**
+ * Tests {@link PivotAlertAggregator}.
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotAlertAggregatorTest {
+
+	@Test
+	public void testQuestionsNotFolded() {
+		final PivotAlertAggregator aggregator = new PivotAlertAggregator();
+		for (final OptionType optionType : OptionType.values()) {
+			final PivotDialogPrompt prompt = aggregator.dialogPrompt("Sure?",
+				"Question", MessageType.QUESTION_MESSAGE, optionType, null);
+			assertEquals(optionType == OptionType.DEFAULT_OPTION,
+				prompt.getClass() != PivotDialogPrompt.class);
+		}
+		assertTrue(aggregator.getHistory().isEmpty());
+	}
+
+	@Test
+	public void testFolding() throws Exception {
+		final PivotAlertAggregator aggregator = new PivotAlertAggregator();
+		final List<CompletableFuture<Result>> futures = new ArrayList<>();
+
+		// NB: The summary opens on the EDT, so it cannot open while we hold it.
+		EventQueue.invokeAndWait(() -> {
+			futures.add(inform(aggregator, "Saved 1 file"));
+			futures.add(inform(aggregator, "Saved 12 file"));
+			futures.add(inform(aggregator, "Done"));
+			for (final CompletableFuture<Result> future : futures) {
+				assertFalse(future.isDone());
+			}
+			assertEquals(0, aggregator.getSuppressedCount());
+		});
+
+		final List<PivotAlertAggregator.Record> history = aggregator.getHistory();
+		assertEquals(3, history.size());
+		assertEquals("Saved 1 file", history.get(0).getMessage());
+		assertEquals("Saved 12 file", history.get(1).getMessage());
+		assertEquals("Done", history.get(2).getMessage());
+		assertEquals(MessageType.INFORMATION_MESSAGE, history.get(2)
+			.getMessageType());
+
+		// NB: Without an owner, the one summary fails, and so do all its prompts.
+		for (final CompletableFuture<Result> future : futures) {
+			assertFailed(future);
+		}
+
+		// NB: A later message does not wait on the failed summary.
+		assertFailed(inform(aggregator, "Later"));
+		assertSame(Result.CLOSED_OPTION, prompt(aggregator, "Last").prompt());
+	}
+
+	@Test
+	public void testOwnFutures() throws Exception {
+		final PivotAlertAggregator aggregator = new PivotAlertAggregator();
+		EventQueue.invokeAndWait(() -> {
+			final PivotDialogPrompt prompt = prompt(aggregator, "One");
+			final CompletableFuture<Result> first = prompt.promptAsync();
+			assertSame(first, prompt.promptAsync());
+
+			final CompletableFuture<Result> second = inform(aggregator, "Two");
+			assertNotSame(first, second);
+			// NB: Canceling one folded prompt leaves the others waiting.
+			first.cancel(true);
+			assertFalse(second.isDone());
+			assertEquals(2, aggregator.getHistory().size());
+		});
+	}
+
+	@Test
+	public void testHistorySize() {
+		final PivotAlertAggregator aggregator = new PivotAlertAggregator(2,
+			PivotAlertAggregator.DEFAULT_INTERVAL);
+		for (int i = 0; i < 5; i++) {
+			inform(aggregator, "Message " + i);
+		}
+		final List<PivotAlertAggregator.Record> history = aggregator.getHistory();
+		assertEquals(2, history.size());
+		assertEquals("Message 3", history.get(0).getMessage());
+		assertEquals("Message 4", history.get(1).getMessage());
+	}
+
+	// -- Helper methods --
+
+	private static PivotDialogPrompt prompt(
+		final PivotAlertAggregator aggregator, final String message)
+	{
+		return aggregator.dialogPrompt(message, "Title",
+			MessageType.INFORMATION_MESSAGE, OptionType.DEFAULT_OPTION, null);
+	}
+
+	private static CompletableFuture<Result> inform(
+		final PivotAlertAggregator aggregator, final String message)
+	{
+		return prompt(aggregator, message).promptAsync();
+	}
+
+	private static void assertFailed(final CompletableFuture<Result> future)
+		throws InterruptedException, TimeoutException
+	{
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Expected the prompt to fail");
+		}
+		catch (final ExecutionException exc) {
+			// NB: Expected.
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.ItemIO;
+import org.scijava.command.Command;
+import org.scijava.command.CommandInfo;
+import org.scijava.command.ContextCommand;
+import org.scijava.plugin.Parameter;
+import org.scijava.ui.pivot.batch.BatchReport.Status;
+
+/**
+ * Tests {@link BatchRunner}.
+ * 
+ * @author Curtis Rueden
+ */
+public class BatchRunnerTest {
+
+	private Context context;
+	private BatchRunner runner;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		runner = new BatchRunner(context);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testStatuses() throws Exception {
+		final BatchReport report = run(Adder.class, "a,b,mode,label\n" + //
+			"1,2,sum,x\n" + // succeeds
+			"1,x,sum,x\n" + // not a number
+			"1,99,sum,x\n" + // out of bounds
+			"1,2,max,x\n" + // not a choice
+			"1,2,sum,\n" + // unresolved required input
+			"1,2,sum\n" + // malformed
+			"1,-1,sum,x\n" + // throws
+			"1,0,sum,x\n"); // cancels itself
+		assertStatuses(report, Status.SUCCEEDED, Status.INVALID, Status.INVALID,
+			Status.INVALID, Status.INVALID, Status.INVALID, Status.FAILED,
+			Status.CANCELED);
+		assertEquals(Collections.singletonList("zero"), report.getRows().get(7)
+			.getMessages());
+		assertEquals(1, report.getCount(Status.SUCCEEDED));
+		assertEquals(5, report.getCount(Status.INVALID));
+		assertNull(report.getError());
+	}
+
+	@Test
+	public void testUncreatableModule() throws Exception {
+		final BatchReport report = run(Uncreatable.class, "a\n1\n2\n");
+		assertStatuses(report, Status.FAILED, Status.FAILED);
+	}
+
+	@Test
+	public void testParallelism() throws Exception {
+		runner.setParallelism(4);
+		final StringBuilder rows = new StringBuilder("a,b,mode,label\n");
+		for (int i = 0; i < 100; i++) {
+			rows.append(i % 10).append(",1,sum,x\n");
+		}
+		final BatchReport report = run(Adder.class, rows.toString());
+		assertEquals(100, report.getCount(Status.SUCCEEDED));
+		final List<BatchReport.Row> sorted = report.getRows();
+		for (int i = 0; i < sorted.size(); i++) {
+			assertEquals(i + 1, sorted.get(i).getIndex());
+		}
+	}
+
+	@Test
+	public void testPostprocessDefault() {
+		assertEquals(false, runner.isPostprocess());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidParallelism() {
+		runner.setParallelism(0);
+	}
+
+	// -- Helper methods --
+
+	private BatchReport run(final Class<? extends Command> command,
+		final String csv) throws Exception
+	{
+		return runner.run(new CommandInfo(command), DelimitedParameterSource.csv(
+			new StringReader(csv))).get();
+	}
+
+	private static void assertStatuses(final BatchReport report,
+		final Status... expected)
+	{
+		final Status[] actual = new Status[report.getRows().size()];
+		for (int i = 0; i < actual.length; i++) {
+			actual[i] = report.getRows().get(i).getStatus();
+		}
+		assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * Adds two numbers, failing on negative ones and canceling on zero. Its
+	 * inputs are not persisted, so that each row only gets its own values.
+	 */
+	public static class Adder extends ContextCommand {
+
+		@Parameter(persist = false)
+		private int a;
+
+		@Parameter(min = "-10", max = "10", persist = false)
+		private int b;
+
+		@Parameter(choices = { "sum", "difference" }, persist = false)
+		private String mode;
+
+		@Parameter(persist = false)
+		private String label;
+
+		@Parameter(type = ItemIO.OUTPUT)
+		private int result;
+
+		@Override
+		public void run() {
+			if (b < 0) throw new IllegalArgumentException("negative");
+			if (b == 0) {
+				cancel("zero");
+				return;
+			}
+			result = mode.equals("sum") ? a + b : a - b;
+		}
+	}
+
+	/** Command which cannot be instantiated. */
+	public static class Uncreatable implements Command {
+
+		@Parameter(persist = false)
+		private int a;
+
+		public Uncreatable() {
+			throw new IllegalStateException("uncreatable");
+		}
+
+		@Override
+		public void run() {
+			// NB: No implementation needed.
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DelimitedParameterSource}.
+ * 
+ * @author Curtis Rueden
+ */
+public class DelimitedParameterSourceTest {
+
+	@Test
+	public void testRows() throws IOException {
+		final ParameterSource source = DelimitedParameterSource.csv(
+			new StringReader("name,count\nfoo,1\nbar,2\n"));
+		assertRow(source.next(), "name", "foo", "count", "1");
+		assertRow(source.next(), "name", "bar", "count", "2");
+		assertNull(source.next());
+		assertNull(source.next());
+	}
+
+	@Test
+	public void testTabs() throws IOException {
+		final ParameterSource source = DelimitedParameterSource.tsv(
+			new StringReader("a\tb\n1,5\t2\n"));
+		assertRow(source.next(), "a", "1,5", "b", "2");
+	}
+
+	@Test
+	public void testEmptyFields() throws IOException {
+		final ParameterSource source = DelimitedParameterSource.csv(
+			new StringReader("a,b,c\n,2,\n"));
+		assertRow(source.next(), "b", "2");
+	}
+
+	@Test
+	public void testBlankLines() throws IOException {
+		final ParameterSource source = DelimitedParameterSource.csv(
+			new StringReader("\na\n\n1\n  \n2\n\n"));
+		assertRow(source.next(), "a", "1");
+		assertRow(source.next(), "a", "2");
+		assertNull(source.next());
+	}
+
+	@Test
+	public void testQuotes() throws IOException {
+		final ParameterSource source = DelimitedParameterSource.csv(
+			new StringReader("a,b\n\"x,y\",\"say \"\"hi\"\"\"\n\"\",z\"q\n"));
+		assertRow(source.next(), "a", "x,y", "b", "say \"hi\"");
+		// NB: A quote only starts a quoted field at the field's start.
+		assertRow(source.next(), "b", "z\"q");
+	}
+
+	@Test
+	public void testMultiLineFields() throws IOException {
+		final ParameterSource source = DelimitedParameterSource.csv(
+			new StringReader("a,b\n\"one\ntwo\n\nthree\",4\n5,6\n"));
+		assertRow(source.next(), "a", "one\ntwo\n\nthree", "b", "4");
+		assertRow(source.next(), "a", "5", "b", "6");
+	}
+
+	@Test
+	public void testFieldCounts() throws IOException {
+		final ParameterSource source = DelimitedParameterSource.csv(
+			new StringReader("a,b\n1\n1,2,3\n\"x\ny\",2,3\n4,5\n"));
+		assertMalformed(source, "Line 2: expected 2 fields but found 1");
+		assertMalformed(source, "Line 3: expected 2 fields but found 3");
+		// NB: The line number is that of the record's first line.
+		assertMalformed(source, "Line 4: expected 2 fields but found 3");
+		assertRow(source.next(), "a", "4", "b", "5");
+		assertNull(source.next());
+	}
+
+	@Test
+	public void testUnterminatedQuote() throws IOException {
+		final ParameterSource source = DelimitedParameterSource.csv(
+			new StringReader("a\n1\n\"2\n3\n"));
+		assertRow(source.next(), "a", "1");
+		assertMalformed(source, "Line 3: unterminated quoted field");
+		assertNull(source.next());
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		assertNull(DelimitedParameterSource.csv(new StringReader("")).next());
+		assertNull(DelimitedParameterSource.csv(new StringReader("a,b\n"))
+			.next());
+	}
+
+	// -- Helper methods --
+
+	/** Asserts that a row holds exactly the given names and values, in order. */
+	static void assertRow(final Map<String, Object> row,
+		final Object... namesAndValues)
+	{
+		assertEquals(namesAndValues.length / 2, row.size());
+		int i = 0;
+		for (final Map.Entry<String, Object> entry : row.entrySet()) {
+			assertEquals(namesAndValues[i++], entry.getKey());
+			assertEquals(namesAndValues[i++], entry.getValue());
+		}
+	}
+
+	/** Asserts that the next row is malformed, with the given message. */
+	static void assertMalformed(final ParameterSource source,
+		final String message) throws IOException
+	{
+		try {
+			source.next();
+			fail("Expected a malformed row");
+		}
+		catch (final MalformedRowException exc) {
+			assertEquals(message, exc.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link JsonLinesParameterSource}.
+ * 
+ * @author Curtis Rueden
+ */
+public class JsonLinesParameterSourceTest {
+
+	@Test
+	public void testRows() throws IOException {
+		final ParameterSource source = new JsonLinesParameterSource(
+			new StringReader("{\"name\": \"foo\", \"count\": 1}\n\n" +
+				"{\"name\": \"a, \\\"b\\\"\"}\n"));
+		DelimitedParameterSourceTest.assertRow(source.next(), "name", "foo",
+			"count", 1);
+		DelimitedParameterSourceTest.assertRow(source.next(), "name",
+			"a, \"b\"");
+		assertNull(source.next());
+	}
+
+	@Test
+	public void testValueTypes() throws IOException {
+		final ParameterSource source = new JsonLinesParameterSource(
+			new StringReader("{\"d\": 2.5, \"b\": true, \"n\": null}\n"));
+		final Map<String, Object> row = source.next();
+		assertEquals(2.5, ((Number) row.get("d")).doubleValue(), 0);
+		assertEquals(Boolean.TRUE, row.get("b"));
+		assertNull(row.get("n"));
+	}
+
+	@Test
+	public void testMalformed() throws IOException {
+		final ParameterSource source = new JsonLinesParameterSource(
+			new StringReader("{bad\n[1, 2]\n\n{\"a\": 1}\n"));
+		DelimitedParameterSourceTest.assertMalformed(source,
+			"Line 1: not a JSON object");
+		DelimitedParameterSourceTest.assertMalformed(source,
+			"Line 2: not a JSON object");
+		DelimitedParameterSourceTest.assertRow(source.next(), "a", 1);
+		assertNull(source.next());
+	}
+
+}
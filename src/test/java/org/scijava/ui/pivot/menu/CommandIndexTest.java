@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.menu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.MenuPath;
+import org.scijava.command.CommandInfo;
+import org.scijava.menu.ShadowMenu;
+import org.scijava.module.ModuleInfo;
+
+/**
+ * Tests {@link CommandIndex}.
+ * 
+ * @author Curtis Rueden
+ */
+public class CommandIndexTest {
+
+	private Context context;
+	private ShadowMenu root;
+	private CommandIndex index;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		root = new ShadowMenu(context, Arrays.asList( //
+			command("File>Open", null), //
+			command("File>Import>Image Sequence", null), //
+			command("Image>Adjust>Brightness/Contrast", null), //
+			command("Image>Adjust>Gamma", "Gamma Correction"), //
+			command("Process>Filters>Gaussian Blur", null), //
+			command("Process>Filters>Mean", null), //
+			command("Analyze>Measure", null), //
+			command("Analyze>Histogram", null)));
+		index = new CommandIndex(root);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testSize() {
+		assertEquals(8, index.size());
+	}
+
+	@Test
+	public void testShorterWordsFirst() {
+		assertEquals(Arrays.asList("Mean", "Measure"), search("me"));
+	}
+
+	@Test
+	public void testNamesBeforeMenus() {
+		assertEquals(Arrays.asList("Image Sequence", "Brightness/Contrast",
+			"Gamma"), search("image"));
+	}
+
+	@Test
+	public void testWordsOfNames() {
+		assertEquals(Collections.singletonList("Gaussian Blur"), search("blur"));
+		assertEquals(Collections.singletonList("Gaussian Blur"), search(
+			"Gaussian B"));
+	}
+
+	@Test
+	public void testLabels() {
+		assertEquals(Collections.singletonList("Gamma"), search("correction"));
+	}
+
+	@Test
+	public void testAllWords() {
+		assertEquals(Collections.singletonList("Brightness/Contrast"), search(
+			"adjust bright"));
+		assertEquals(Collections.singletonList("Mean"), search("filters mea"));
+	}
+
+	@Test
+	public void testFuzzy() {
+		assertEquals("Histogram", search("histgram").get(0));
+		assertEquals("Brightness/Contrast", search("brigthness").get(0));
+		// NB: Fuzzy matches are only given when nothing matches exactly.
+		assertEquals(Collections.singletonList("Mean"), search("mean"));
+		assertTrue(search("xyzzy").isEmpty());
+	}
+
+	@Test
+	public void testLimit() {
+		assertEquals(Collections.singletonList("Mean"), search("me", 1));
+		assertTrue(search("me", 0).isEmpty());
+		assertTrue(search(" - ", 10).isEmpty());
+	}
+
+	@Test
+	public void testSync() {
+		final ModuleInfo median = command("Process>Filters>Median", null);
+		root.addAll(Collections.singletonList(median));
+		index.sync();
+		assertEquals(9, index.size());
+		assertEquals(Arrays.asList("Mean", "Median"), search("me").subList(0,
+			2));
+
+		root.removeAll(Collections.singletonList(median));
+		index.sync();
+		assertEquals(8, index.size());
+		assertEquals(Arrays.asList("Mean", "Measure"), search("me"));
+	}
+
+	@Test
+	public void testUpdate() {
+		final CommandInfo alpha = command("Plugins>Alpha Tool", null);
+		root.addAll(Collections.singletonList(alpha));
+		index.sync();
+		assertEquals(Collections.singletonList("Alpha Tool"), search("alpha"));
+
+		// NB: The menu tree replaces the node of an updated module.
+		alpha.setMenuPath(new MenuPath("Plugins>Beta Tool"));
+		root.update(alpha);
+		index.update(leaves(alpha));
+		assertEquals(9, index.size());
+		assertTrue(search("alpha").isEmpty());
+		assertEquals(Collections.singletonList("Beta Tool"), search("beta"));
+	}
+
+	@Test
+	public void testPath() {
+		final ShadowMenu gamma = index.search("gamma", 1).get(0);
+		assertEquals("Image > Adjust", CommandIndex.path(gamma));
+	}
+
+	// -- Helper methods --
+
+	private List<String> search(final String query) {
+		return search(query, 10);
+	}
+
+	private List<String> search(final String query, final int limit) {
+		final List<String> names = new ArrayList<>();
+		for (final ShadowMenu shadow : index.search(query, limit)) {
+			names.add(shadow.getName());
+		}
+		return names;
+	}
+
+	/** Gets the menu leaves of the given module. */
+	private List<ShadowMenu> leaves(final ModuleInfo info) {
+		final List<ShadowMenu> leaves = new ArrayList<>();
+		for (final ShadowMenu leaf : MenuTrees.leaves(root)) {
+			if (leaf.getModuleInfo() == info) leaves.add(leaf);
+		}
+		return leaves;
+	}
+
+	private static CommandInfo command(final String menuPath,
+		final String label)
+	{
+		// NB: Each command needs a module identifier of its own.
+		final CommandInfo info = new CommandInfo("test." + menuPath.replaceAll(
+			"\\W", ""));
+		info.setMenuPath(new MenuPath(menuPath));
+		info.setLabel(label);
+		return info;
+	}
+
+}
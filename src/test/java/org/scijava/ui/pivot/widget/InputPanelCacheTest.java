@@ -0,0 +1,290 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.module.DefaultMutableModule;
+import org.scijava.module.DefaultMutableModuleInfo;
+import org.scijava.module.DefaultMutableModuleItem;
+import org.scijava.module.ModuleInfo;
+import org.scijava.module.MutableModuleInfo;
+import org.scijava.widget.WidgetModel;
+import org.scijava.widget.WidgetService;
+
+/**
+ * Tests {@link InputPanelCache} and {@link BoundWidgetModel}.
+ * 
+ * @author Curtis Rueden
+ */
+public class InputPanelCacheTest {
+
+	private Context context;
+	private WidgetService widgetService;
+	private PivotInputPanel panel;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		widgetService = context.service(WidgetService.class);
+		panel = new PivotInputPanel();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testSameSignature() {
+		final DefaultMutableModule module = module();
+		final DefaultMutableModule other = new DefaultMutableModule(module
+			.getInfo());
+		for (final String name : Arrays.asList("name", "count", "mode")) {
+			assertEquals(InputPanelCache.signature(model(module, name)),
+				InputPanelCache.signature(model(other, name)));
+		}
+	}
+
+	@Test
+	public void testLabel() {
+		final DefaultMutableModule module = module();
+		final List<Object> before = InputPanelCache.signature(model(module,
+			"name"));
+		item(module, "name").setLabel("Full name");
+		final List<Object> after = InputPanelCache.signature(model(module,
+			"name"));
+		assertNotEquals(before, after);
+		assertEquals(before.subList(2, before.size()), after.subList(2, after
+			.size()));
+	}
+
+	@Test
+	public void testBounds() {
+		final DefaultMutableModule module = module();
+		final List<Object> before = InputPanelCache.shape(model(module, "count"));
+		item(module, "count").setMaximumValue(50);
+		assertNotEquals(before, InputPanelCache.shape(model(module, "count")));
+	}
+
+	@Test
+	public void testChoices() {
+		final DefaultMutableModule module = module();
+		final List<Object> before = InputPanelCache.shape(model(module, "mode"));
+		item(module, "mode").setChoices(Arrays.asList("fast", "slow", "exact"));
+		assertNotEquals(before, InputPanelCache.shape(model(module, "mode")));
+	}
+
+	@Test
+	public void testShape() {
+		final DefaultMutableModule module = module();
+		module.getInfo().addInput(new DefaultMutableModuleItem<>(module
+			.getInfo(), "title", String.class));
+		// NB: Inputs of the same kind share a shape, but not a signature.
+		assertEquals(InputPanelCache.shape(model(module, "name")), InputPanelCache
+			.shape(model(module, "title")));
+		assertNotEquals(InputPanelCache.signature(model(module, "name")),
+			InputPanelCache.signature(model(module, "title")));
+		assertNotEquals(InputPanelCache.shape(model(module, "name")),
+			InputPanelCache.shape(model(module, "count")));
+	}
+
+	@Test
+	public void testObjectPools() {
+		final DefaultMutableModule module = module();
+		module.getInfo().addInput(new DefaultMutableModuleItem<>(module
+			.getInfo(), "thing", Object.class));
+		final List<Object> one = InputPanelCache.signature(model(module, "thing",
+			Arrays.asList("a", "b")));
+		final List<Object> other = InputPanelCache.signature(model(module,
+			"thing", Collections.singletonList(new Object())));
+		final List<Object> none = InputPanelCache.signature(model(module, "thing",
+			Collections.emptyList()));
+		// NB: The objects are not part of the signature, so it holds none.
+		assertEquals(one, other);
+		assertNotEquals(one, none);
+	}
+
+	@Test
+	public void testAcquireRelease() {
+		final InputPanelCache cache = new InputPanelCache();
+		final ModuleInfo info = module().getInfo();
+		assertNull(cache.acquire(info));
+		final InputPanelCache.CachedPanel entry =
+			new InputPanelCache.CachedPanel(panel);
+		cache.release(info, entry);
+		assertEquals(1, cache.size());
+		assertSame(entry, cache.acquire(info));
+		// NB: A panel in use is not handed out again.
+		assertNull(cache.acquire(info));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCapacity() {
+		final InputPanelCache cache = new InputPanelCache(2);
+		final ModuleInfo a = new DefaultMutableModuleInfo();
+		final ModuleInfo b = new DefaultMutableModuleInfo();
+		final ModuleInfo c = new DefaultMutableModuleInfo();
+		final InputPanelCache.CachedPanel entry =
+			new InputPanelCache.CachedPanel(panel);
+		cache.release(a, entry);
+		cache.release(b, new InputPanelCache.CachedPanel(new PivotInputPanel()));
+		cache.release(a, cache.acquire(a)); // a is now more recently used
+		cache.release(c, new InputPanelCache.CachedPanel(new PivotInputPanel()));
+		assertEquals(2, cache.size());
+		assertSame(entry, cache.acquire(a));
+		assertNull(cache.acquire(b));
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCounts() {
+		final InputPanelCache cache = new InputPanelCache();
+		cache.record(false);
+		cache.record(true);
+		cache.record(true);
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testRebind() {
+		final DefaultMutableModule module = module();
+		final DefaultMutableModule other = new DefaultMutableModule(module
+			.getInfo());
+		other.setInput("count", 9);
+		final BoundWidgetModel model = new BoundWidgetModel(model(module,
+			"count"));
+		assertEquals(5, model.getValue());
+		model.rebind(model(other, "count"));
+		assertSame(other, model.getModule());
+		assertEquals(9, model.getValue());
+		model.setValue(7);
+		assertEquals(7, other.getInput("count"));
+		assertEquals(5, module.getInput("count"));
+	}
+
+	@Test
+	public void testRebindChoices() {
+		final DefaultMutableModule module = module();
+		final BoundWidgetModel model = new BoundWidgetModel(model(module,
+			"mode"));
+		assertEquals(Arrays.asList("fast", "slow"), Arrays.asList(model
+			.getChoices()));
+		item(module, "mode").setChoices(Arrays.asList("exact"));
+		// NB: Choices are memoized until the model is rebound.
+		assertEquals(2, model.getChoices().length);
+		model.rebind(model(module, "mode"));
+		assertEquals(Arrays.asList("exact"), Arrays.asList(model.getChoices()));
+	}
+
+	@Test
+	public void testReleaseUnbinds() {
+		final InputPanelCache cache = new InputPanelCache();
+		final DefaultMutableModule module = module();
+		final InputPanelCache.CachedPanel entry =
+			new InputPanelCache.CachedPanel(panel);
+		final BoundWidgetModel model = new BoundWidgetModel(model(module,
+			"count"));
+		entry.add(model);
+		cache.release(module.getInfo(), entry);
+		assertEquals(Collections.singletonList("count"), entry.names);
+		try {
+			model.getModule();
+			fail("Model still bound to its module");
+		}
+		catch (final NullPointerException exc) {
+			// NB: Expected, since the model was unbound.
+		}
+		final DefaultMutableModule other = new DefaultMutableModule(module
+			.getInfo());
+		model.rebind(model(other, "count"));
+		assertSame(other, model.getModule());
+	}
+
+	// -- Helper methods --
+
+	/** Creates a module with a text, a bounded number and a choice input. */
+	private static DefaultMutableModule module() {
+		final DefaultMutableModule module = new DefaultMutableModule();
+		final MutableModuleInfo info = module.getInfo();
+		info.addInput(new DefaultMutableModuleItem<>(info, "name",
+			String.class));
+		final DefaultMutableModuleItem<Integer> count =
+			new DefaultMutableModuleItem<>(info, "count", Integer.class);
+		count.setMinimumValue(0);
+		count.setMaximumValue(100);
+		info.addInput(count);
+		final DefaultMutableModuleItem<String> mode =
+			new DefaultMutableModuleItem<>(info, "mode", String.class);
+		mode.setChoices(Arrays.asList("fast", "slow"));
+		info.addInput(mode);
+		module.setInput("name", "x");
+		module.setInput("count", 5);
+		module.setInput("mode", "fast");
+		return module;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> DefaultMutableModuleItem<T> item(
+		final DefaultMutableModule module, final String name)
+	{
+		return (DefaultMutableModuleItem<T>) module.getInfo().getInput(name);
+	}
+
+	private WidgetModel model(final DefaultMutableModule module,
+		final String name)
+	{
+		return model(module, name, Collections.emptyList());
+	}
+
+	private WidgetModel model(final DefaultMutableModule module,
+		final String name, final List<?> objectPool)
+	{
+		return widgetService.createModel(panel, module, module.getInfo().getInput(
+			name), objectPool);
+	}
+
+}
@@ -0,0 +1,220 @@
+/*
+ * #%L
+ * SciJava UI components for Apache Pivot.
+ * %%
+ * Copyright (C) 2011 - 2015 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.pivot.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.apache.pivot.wtk.BoxPane;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.module.DefaultMutableModule;
+import org.scijava.module.DefaultMutableModuleItem;
+import org.scijava.module.ModuleItem;
+import org.scijava.module.MutableModuleInfo;
+import org.scijava.widget.InputWidget;
+import org.scijava.widget.WidgetModel;
+import org.scijava.widget.WidgetService;
+
+/**
+ * Tests how {@link PivotInputPanel} tracks which widgets need refreshing.
+ * 
+ * @author Curtis Rueden
+ */
+public class PivotInputPanelTest {
+
+	private Context context;
+	private WidgetService widgetService;
+	private DefaultMutableModule module;
+	private PivotInputPanel panel;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		widgetService = context.service(WidgetService.class);
+		panel = new PivotInputPanel();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testUnchanged() {
+		addWidgets(4);
+		panel.refresh();
+		assertEquals(0, panel.getLastTouchedCount());
+		assertEquals(4, panel.getSkippedCount());
+	}
+
+	@Test
+	public void testChanged() {
+		addWidgets(4);
+		panel.runCallback(module, () -> module.setInput("input2", 7));
+		panel.refresh();
+		assertEquals(1, panel.getLastTouchedCount());
+		// NB: The widget shows the new value.
+		assertEquals("7", String.valueOf(panel.getValue("input2")));
+		panel.refresh();
+		assertEquals(0, panel.getLastTouchedCount());
+		assertEquals(2, panel.getRefreshCount());
+		assertEquals(1, panel.getTouchedCount());
+		assertEquals(7, panel.getSkippedCount());
+	}
+
+	@Test
+	public void testUntracked() {
+		addWidgets(4);
+		// NB: Only changes made through a callback are tracked.
+		module.setInput("input2", 7);
+		panel.refresh();
+		assertEquals(0, panel.getLastTouchedCount());
+		panel.runCallback(module, () -> module.setInput("input2", 7));
+		panel.refresh();
+		assertEquals(0, panel.getLastTouchedCount());
+		panel.markDirty("input2");
+		panel.refresh();
+		assertEquals(1, panel.getLastTouchedCount());
+	}
+
+	@Test
+	public void testMarkDirty() {
+		addWidgets(4);
+		panel.markDirty("input1");
+		panel.refresh();
+		assertEquals(1, panel.getLastTouchedCount());
+		panel.markAllDirty();
+		panel.refresh();
+		assertEquals(4, panel.getLastTouchedCount());
+		panel.refresh();
+		assertEquals(0, panel.getLastTouchedCount());
+	}
+
+	@Test
+	public void testEdited() {
+		addWidgets(4);
+		// NB: An edit is already shown by the widget which made it.
+		panel.getWidget("input0").get().setValue("edited");
+		assertEquals("edited", module.getInput("input0"));
+		panel.refresh();
+		assertEquals(0, panel.getLastTouchedCount());
+	}
+
+	@Test
+	public void testUnbind() {
+		addWidgets(4);
+		panel.unbind();
+		panel.refresh();
+		assertEquals(4, panel.getLastTouchedCount());
+	}
+
+	@Test
+	public void testRows() {
+		addRows(4);
+		assertEquals(4, panel.getBuiltCount());
+		panel.runCallback(module, () -> module.setInput("input3", 3));
+		panel.refresh();
+		assertEquals(1, panel.getLastTouchedCount());
+		assertEquals(3, panel.getValue("input3"));
+	}
+
+	@Test
+	public void testLazyRows() {
+		addRows(1000);
+		assertEquals(1000, panel.getWidgetCount());
+		final int built = panel.getBuiltCount();
+		assertTrue(built > 0 && built < 100);
+		// NB: Rows without widgets are left alone, but still have values.
+		assertNull(panel.getWidget("input999"));
+		module.setInput("input999", 9);
+		assertEquals(9, panel.getValue("input999"));
+		panel.markAllDirty();
+		panel.refresh();
+		assertEquals(built, panel.getLastTouchedCount());
+		assertEquals(0, panel.getSkippedCount());
+	}
+
+	// -- Helper methods --
+
+	/** Creates a module with the given number of text and number inputs. */
+	private void createModule(final int inputs) {
+		module = new DefaultMutableModule();
+		final MutableModuleInfo info = module.getInfo();
+		for (int i = 0; i < inputs; i++) {
+			final String name = "input" + i;
+			if (i % 2 == 0) {
+				info.addInput(new DefaultMutableModuleItem<>(info, name,
+					String.class));
+				module.setInput(name, "text");
+			}
+			else {
+				final DefaultMutableModuleItem<Integer> item =
+					new DefaultMutableModuleItem<>(info, name, Integer.class);
+				item.setMinimumValue(0);
+				item.setMaximumValue(100);
+				info.addInput(item);
+				module.setInput(name, 5);
+			}
+		}
+	}
+
+	private void addWidgets(final int inputs) {
+		createModule(inputs);
+		for (final ModuleItem<?> item : module.getInfo().inputs()) {
+			panel.addWidget(createWidget(new BoundWidgetModel(model(item))));
+		}
+	}
+
+	private void addRows(final int inputs) {
+		createModule(inputs);
+		panel.setWidgetFactory(this::createWidget);
+		for (final ModuleItem<?> item : module.getInfo().inputs()) {
+			panel.addRow(new BoundWidgetModel(model(item)));
+		}
+	}
+
+	private WidgetModel model(final ModuleItem<?> item) {
+		return widgetService.createModel(panel, module, item, Collections
+			.emptyList());
+	}
+
+	@SuppressWarnings("unchecked")
+	private InputWidget<?, BoxPane> createWidget(final WidgetModel model) {
+		return (InputWidget<?, BoxPane>) widgetService.create(model);
+	}
+
+}